@@ -0,0 +1,121 @@
+package yetmorecode.file.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import yetmorecode.file.BinaryFileInputStream;
+import yetmorecode.file.BinaryInput;
+import yetmorecode.file.MappedBinaryFileInput;
+import yetmorecode.file.format.mz.MzHeader;
+
+/**
+ * Parses a MZ header 1M times through each read path<br>
+ * <br>
+ * Reports the time and the heap allocated per parsed header:
+ * <ul>
+ * <li>stream: field by field with readShort()/readInt() at the current position</li>
+ * <li>positional: {@link MzHeader#fromStream(BinaryInput, long)} on a {@link BinaryFileInputStream}</li>
+ * <li>mapped: {@link MzHeader#fromStream(BinaryInput, long)} on a {@link MappedBinaryFileInput}</li>
+ * </ul>
+ * Usage: MzHeaderBenchmark [file [iterations]], without a file a minimal MZ header is generated.
+ * Allocation figures need a JVM providing com.sun.management.ThreadMXBean.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class MzHeaderBenchmark {
+	
+	private interface Parser {
+		MzHeader parse() throws IOException;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		var file = args.length > 0 ? new File(args[0]) : sample();
+		var iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		try (var stream = new BinaryFileInputStream(file); var mapped = new MappedBinaryFileInput(file)) {
+			run("stream", iterations, () -> {
+				stream.position(0);
+				return readFields(stream);
+			});
+			run("positional", iterations, () -> MzHeader.fromStream(stream, 0));
+			run("mapped", iterations, () -> MzHeader.fromStream(mapped, 0));
+		}
+	}
+	
+	/**
+	 * Reads the header fields one by one at the current position, like the parsers did before bulk reads
+	 */
+	private static MzHeader readFields(BinaryInput input) throws IOException {
+		var header = new MzHeader();
+		header.signature = input.readShort();
+		header.bytesOnLastBlock = input.readShort();
+		header.blockCount = input.readShort();
+		header.relocations = input.readShort();
+		header.headerSize = input.readShort();
+		header.minExtraParagraphs = input.readShort();
+		header.maxExtraParagraphs = input.readShort();
+		header.ss = input.readShort();
+		header.sp = input.readShort();
+		header.checksum = input.readShort();
+		header.ip = input.readShort();
+		header.cs = input.readShort();
+		header.relocationTableOffset = input.readShort();
+		header.overlayNumber = input.readShort();
+		for (int i = 0; i < header.reserved.length; i++) {
+			header.reserved[i] = input.readShort();
+		}
+		header.oemId = input.readShort();
+		header.oemInfo = input.readShort();
+		for (int i = 0; i < header.resreved2.length; i++) {
+			header.resreved2[i] = input.readShort();
+		}
+		header.fileAddressNewExe = input.readInt();
+		return header;
+	}
+	
+	private static void run(String name, int iterations, Parser parser) throws IOException {
+		// warm up, so the measured round runs compiled code
+		loop(parser, Math.min(iterations, 100_000));
+		var allocated = allocatedBytes();
+		var start = System.nanoTime();
+		var check = loop(parser, iterations);
+		var time = System.nanoTime() - start;
+		allocated = allocatedBytes() - allocated;
+		System.out.printf("%-10s %8.1f ns/op %8s bytes/op (%d)%n", name, (double) time / iterations,
+			allocated < 0 ? "n/a" : String.format("%.1f", (double) allocated / iterations), check);
+	}
+	
+	private static long loop(Parser parser, int iterations) throws IOException {
+		var check = 0L;
+		for (int i = 0; i < iterations; i++) {
+			check += parser.parse().fileAddressNewExe;
+		}
+		return check;
+	}
+	
+	/**
+	 * Bytes allocated by the current thread so far, -1 if the JVM does not tell
+	 */
+	private static long allocatedBytes() {
+		var bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+		}
+		return -1;
+	}
+	
+	private static File sample() throws IOException {
+		var bb = ByteBuffer.allocate(MzHeader.SIZE);
+		var header = new MzHeader();
+		header.signature = MzHeader.SIGNATURE_DOS;
+		header.headerSize = MzHeader.SIZE / 16;
+		header.fileAddressNewExe = MzHeader.SIZE;
+		header.toBuffer(bb, 0);
+		var file = File.createTempFile("mzheader", ".bin");
+		file.deleteOnExit();
+		Files.write(file.toPath(), bb.array());
+		return file;
+	}
+}
@@ -0,0 +1,119 @@
+package yetmorecode.file;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import yetmorecode.file.source.ByteBufferSource;
+
+/**
+ * Asynchronous reader for header and table sized regions of a file<br>
+ * <br>
+ * Reads are issued on an AsynchronousFileChannel and complete a CompletableFuture,
+ * so dependent reads (e.g. MZ header, then the LE header it points to) can be chained
+ * without blocking a thread per open file.<br>
+ * Each region is read into memory as a whole and then handed to the regular
+ * fromStream parsers through a {@link ByteSourceInput}.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class AsyncBinaryFile implements Closeable {
+
+	/**
+	 * A fromStream style parser, e.g. MzHeader::fromStream
+	 */
+	public interface Parser<T> {
+		T parse(BinaryInput input, long offset) throws Exception;
+	}
+
+	private final AsynchronousFileChannel channel;
+
+	private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+
+	public AsyncBinaryFile(Path path) throws IOException {
+		channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+	}
+
+	/**
+	 * @param executor pool handling I/O completions, shared between many files
+	 */
+	public AsyncBinaryFile(Path path, ExecutorService executor) throws IOException {
+		channel = AsynchronousFileChannel.open(path, Set.of(StandardOpenOption.READ), executor);
+	}
+
+	public AsyncBinaryFile(Path path, ExecutorService executor, ByteOrder order) throws IOException {
+		this(path, executor);
+		byteOrder = order;
+	}
+
+	public long size() throws IOException {
+		return channel.size();
+	}
+
+	/**
+	 * Reads size bytes at offset
+	 *
+	 * @return future of a buffer holding exactly size bytes, completed with
+	 *         an EOFException if the file ends first. Errors raised when issuing
+	 *         a read (e.g. a closed channel or a negative offset) fail the future as well.
+	 */
+	public CompletableFuture<ByteBuffer> read(long offset, int size) {
+		var future = new CompletableFuture<ByteBuffer>();
+		try {
+			var bb = ByteBuffer.allocate(size).order(byteOrder);
+			channel.read(bb, offset, offset, new CompletionHandler<Integer, Long>() {
+				@Override
+				public void completed(Integer n, Long position) {
+					if (n < 0) {
+						future.completeExceptionally(new EOFException("Unexpected end of file at offset " + position));
+					} else if (bb.hasRemaining()) {
+						try {
+							channel.read(bb, position + n, position + n, this);
+						} catch (RuntimeException e) {
+							future.completeExceptionally(e);
+						}
+					} else {
+						future.complete(bb.flip());
+					}
+				}
+
+				@Override
+				public void failed(Throwable e, Long position) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Reads size bytes at offset and runs parser on them once they arrived.<br>
+	 * <br>
+	 * The parser sees the region as an input starting at offset 0.
+	 */
+	public <T> CompletableFuture<T> parse(long offset, int size, Parser<T> parser) {
+		return read(offset, size).thenCompose(bb -> {
+			try {
+				return CompletableFuture.completedFuture(parser.parse(new ByteSourceInput(new ByteBufferSource(bb), byteOrder), 0));
+			} catch (Exception e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		});
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
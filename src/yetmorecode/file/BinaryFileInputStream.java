@@ -1,5 +1,6 @@
 package yetmorecode.file;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -7,10 +8,39 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
-public class BinaryFileInputStream extends FileInputStream {
+import yetmorecode.file.text.Codepage;
 
+/**
+ * Binary file reader<br>
+ * <br>
+ * Reads without an offset continue at the current stream position.<br>
+ * Reads at an absolute offset use positional channel reads (pread) and never
+ * touch the stream position, so they can be issued from many threads at once.<br>
+ * <br>
+ * Optionally a {@link BlockCache} can be enabled beneath the absolute offset reads,
+ * so scattered small reads are served from memory after the first touch.
+ */
+public class BinaryFileInputStream extends FileInputStream implements BinaryInput {
+
+	/**
+	 * Per-thread decode buffer for positional reads
+	 */
+	private static final ThreadLocal<ByteBuffer> POSITIONAL_SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(8));
+	
 	private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
 	
+	private ByteDecoder decoder = ByteDecoder.LITTLE_ENDIAN;
+	
+	/**
+	 * Reusable decode buffer, so reading a primitive does not allocate
+	 */
+	private final byte[] scratch = new byte[8];
+	
+	/**
+	 * Optional cache serving the absolute offset reads
+	 */
+	private volatile BlockCache blockCache;
+	
 	public BinaryFileInputStream(String name) throws FileNotFoundException {
 		super(name);
 	}
@@ -18,6 +48,7 @@ public class BinaryFileInputStream extends FileInputStream {
 	public BinaryFileInputStream(String name, ByteOrder order) throws FileNotFoundException {
 		super(name);
 		byteOrder = order;
+		decoder = ByteDecoder.forOrder(order);
 	}
 	
 	public BinaryFileInputStream(File file) throws FileNotFoundException {
@@ -27,13 +58,15 @@ public class BinaryFileInputStream extends FileInputStream {
 	public BinaryFileInputStream(File file, ByteOrder order) throws FileNotFoundException {
 		this(file);
 		byteOrder = order;
+		decoder = ByteDecoder.forOrder(order);
 	}
 	
 	public int readByte(long offset) throws IOException {
-		var old = position(offset);
-		int ret = readByte();
-		position(old);
-		return ret;
+		var bb = POSITIONAL_SCRATCH.get().clear().limit(1);
+		if (positionalRead(offset, bb) < 1) {
+			return -1;
+		}
+		return bb.array()[0] & 0xff;
 	}
 	
 	public int readByte() throws IOException {
@@ -41,56 +74,94 @@ public class BinaryFileInputStream extends FileInputStream {
 	}
 	
 	public short readShort(long offset) throws IOException {
-		var old = position(offset);
-		var i = readShort();
-		position(old);
-		return i;
+		return decoder.getShort(pread(offset, 2), 0);
 	}
 	
 	public short readShort() throws IOException  {
-		byte[] bytes = readNBytes(2);
-		ByteBuffer bb = ByteBuffer.wrap(bytes);
-		bb.order(byteOrder);
-		return bb.getShort();
+		fill(2);
+		return decoder.getShort(scratch, 0);
 	}
 	
 	public int readInt(long offset) throws IOException {
-		var old = position(offset);
-		var i = readInt();
-		position(old);
-		return i;
+		return decoder.getInt(pread(offset, 4), 0);
 	}
 	
 	public int readInt() throws IOException  {
-		byte[] bytes = readNBytes(4);
-		ByteBuffer bb = ByteBuffer.wrap(bytes);
-		bb.order(byteOrder);
-		return bb.getInt();
+		fill(4);
+		return decoder.getInt(scratch, 0);
 	}
 	
 	public float readFloat(long offset) throws IOException {
-		var old = position(offset);
-		var i = readFloat();
-		position(old);
-		return i;
+		return Float.intBitsToFloat(readInt(offset));
 	}
 	
 	public float readFloat() throws IOException  {
-		byte[] bytes = readNBytes(4);
-		ByteBuffer bb = ByteBuffer.wrap(bytes);
-		bb.order(byteOrder);
-		return bb.getFloat();
+		return Float.intBitsToFloat(readInt());
 	}
 	
 	public String readString(long offset, int size) throws IOException {
-		var old = position(offset);
-		var i = readString(size);
-		position(old);
-		return i;
+		var bytes = new byte[size];
+		readFully(offset, bytes, 0, size);
+		return Codepage.CP437.decode(bytes);
 	}
 	
 	public String readString(int size) throws IOException {
-		return new String(readNBytes(size));
+		return Codepage.CP437.decode(readNBytes(size));
+	}
+	
+	public void readFully(long offset, byte[] b, int off, int len) throws IOException {
+		readFully(offset, ByteBuffer.wrap(b, off, len));
+	}
+	
+	/**
+	 * Fills the remaining space of dst with the bytes at offset.<br>
+	 * <br>
+	 * This is a positional read, the stream position is left untouched.
+	 */
+	public void readFully(long offset, ByteBuffer dst) throws IOException {
+		while (dst.hasRemaining()) {
+			var n = positionalRead(offset, dst);
+			if (n < 0) {
+				throw new EOFException("Unexpected end of file at offset " + offset);
+			}
+			offset += n;
+		}
+	}
+	
+	/**
+	 * Puts a block cache beneath the absolute offset reads
+	 * 
+	 * @param blockSize size of a cached block
+	 * @param byteBudget maximum number of cached bytes
+	 * @return the new cache, e.g. to inspect its hit/miss counters
+	 */
+	public BlockCache enableBlockCache(int blockSize, long byteBudget) {
+		blockCache = new BlockCache((position, dst) -> getChannel().read(dst, position), blockSize, byteBudget);
+		return blockCache;
+	}
+	
+	public BlockCache enableBlockCache(long byteBudget) {
+		return enableBlockCache(BlockCache.DEFAULT_BLOCK_SIZE, byteBudget);
+	}
+	
+	public void disableBlockCache() {
+		blockCache = null;
+	}
+	
+	public BlockCache getBlockCache() {
+		return blockCache;
+	}
+	
+	public ByteOrder order() {
+		return byteOrder;
+	}
+	
+	public long size() throws IOException {
+		return getChannel().size();
+	}
+	
+	public long position() throws IOException {
+		return getChannel().position();
 	}
 	
 	public long position(long offset) throws IOException {
@@ -98,4 +169,45 @@ public class BinaryFileInputStream extends FileInputStream {
 		getChannel().position(offset);
 		return old;
 	}
+	
+	/**
+	 * Reads exactly size bytes into the scratch buffer
+	 */
+	private void fill(int size) throws IOException {
+		if (readNBytes(scratch, 0, size) < size) {
+			throw new EOFException();
+		}
+	}
+	
+	/**
+	 * Positional read, going through the block cache if enabled
+	 */
+	private int positionalRead(long offset, ByteBuffer dst) throws IOException {
+		var cache = blockCache;
+		if (cache == null) {
+			return getChannel().read(dst, offset);
+		}
+		if (!dst.hasArray()) {
+			var bytes = new byte[dst.remaining()];
+			var n = cache.read(offset, bytes, 0, bytes.length);
+			if (n > 0) {
+				dst.put(bytes, 0, n);
+			}
+			return n;
+		}
+		var n = cache.read(offset, dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+		if (n > 0) {
+			dst.position(dst.position() + n);
+		}
+		return n;
+	}
+	
+	/**
+	 * Reads exactly size bytes at offset into the per-thread scratch buffer
+	 */
+	private byte[] pread(long offset, int size) throws IOException {
+		var bb = POSITIONAL_SCRATCH.get().clear().limit(size);
+		readFully(offset, bb);
+		return bb.array();
+	}
 }
@@ -1,12 +1,250 @@
 package yetmorecode.file;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
+import yetmorecode.file.text.Codepage;
+
+/**
+ * Buffered binary file writer<br>
+ * <br>
+ * Mirrors {@link BinaryFileInputStream}: values are encoded in a configurable byte order
+ * into a reusable internal buffer, which is written out when full or on flush/close.<br>
+ * Already written header fields can be back-filled with the patch methods, e.g. sizes
+ * or counts that are only known once the body has been written.
+ */
 public class BinaryFileOutputStream extends FileOutputStream {
 
+	private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	
+	/**
+	 * Default size of the write buffer
+	 */
+	public final static int BUFFER_SIZE = 0x10000;
+	
+	private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+	
+	/**
+	 * Bytes not yet handed to the file
+	 */
+	private final byte[] buffer;
+	private int count = 0;
+	
+	/**
+	 * Encode buffer for patches outside of the write buffer
+	 */
+	private final byte[] patch = new byte[4];
+	
 	public BinaryFileOutputStream(String name) throws FileNotFoundException {
-		super(name);
+		this(new File(name));
+	}
+	
+	public BinaryFileOutputStream(String name, ByteOrder order) throws FileNotFoundException {
+		this(new File(name), order);
+	}
+	
+	public BinaryFileOutputStream(File file) throws FileNotFoundException {
+		this(file, ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	public BinaryFileOutputStream(File file, ByteOrder order) throws FileNotFoundException {
+		this(file, order, BUFFER_SIZE);
+	}
+	
+	public BinaryFileOutputStream(File file, ByteOrder order, int bufferSize) throws FileNotFoundException {
+		super(file);
+		byteOrder = order;
+		buffer = new byte[bufferSize];
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		reserve(1);
+		buffer[count++] = (byte) b;
+	}
+	
+	@Override
+	public void write(byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (len >= buffer.length) {
+			// large blocks bypass the buffer
+			flushBuffer();
+			super.write(b, off, len);
+			return;
+		}
+		reserve(len);
+		System.arraycopy(b, off, buffer, count, len);
+		count += len;
+	}
+	
+	public void writeByte(int b) throws IOException {
+		write(b);
+	}
+	
+	public void writeShort(int s) throws IOException {
+		reserve(2);
+		encodeShort(buffer, count, (short) s);
+		count += 2;
+	}
+	
+	public void writeInt(int i) throws IOException {
+		reserve(4);
+		encodeInt(buffer, count, i);
+		count += 4;
+	}
+	
+	public void writeFloat(float f) throws IOException {
+		writeInt(Float.floatToRawIntBits(f));
+	}
+	
+	/**
+	 * Writes s encoded as {@link Codepage#CP437}, the counterpart of {@link BinaryInput#readString(long, int)}
+	 */
+	public void writeString(String s) throws IOException {
+		writeString(s, Codepage.CP437);
+	}
+	
+	public void writeString(String s, Codepage codepage) throws IOException {
+		write(codepage.encode(s));
+	}
+	
+	/**
+	 * Writes s encoded as {@link Codepage#CP437} into a fixed size field, truncating or padding with zeros
+	 */
+	public void writeString(String s, int size) throws IOException {
+		writeString(s, size, Codepage.CP437);
+	}
+	
+	/**
+	 * Writes s into a fixed size field, truncating or padding with zeros.<br>
+	 * <br>
+	 * The codepage encodes one byte per char, so truncation never splits a char.
+	 */
+	public void writeString(String s, int size, Codepage codepage) throws IOException {
+		var bytes = codepage.encode(s);
+		var n = Math.min(bytes.length, size);
+		write(bytes, 0, n);
+		for (int i = n; i < size; i++) {
+			write(0);
+		}
+	}
+	
+	/**
+	 * Overwrites a 16-bit value at an absolute offset that has already been written.<br>
+	 * <br>
+	 * The current position is not changed.
+	 */
+	public void patchShort(long offset, int s) throws IOException {
+		var index = bufferIndex(offset, 2);
+		if (index >= 0) {
+			encodeShort(buffer, index, (short) s);
+		} else {
+			encodeShort(patch, 0, (short) s);
+			pwrite(offset, 2);
+		}
+	}
+	
+	/**
+	 * Overwrites a 32-bit value at an absolute offset that has already been written.<br>
+	 * <br>
+	 * The current position is not changed.
+	 */
+	public void patchInt(long offset, int i) throws IOException {
+		var index = bufferIndex(offset, 4);
+		if (index >= 0) {
+			encodeInt(buffer, index, i);
+		} else {
+			encodeInt(patch, 0, i);
+			pwrite(offset, 4);
+		}
+	}
+	
+	/**
+	 * Current write position including buffered bytes
+	 */
+	public long position() throws IOException {
+		return getChannel().position() + count;
+	}
+	
+	public ByteOrder order() {
+		return byteOrder;
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			flushBuffer();
+		} finally {
+			super.close();
+		}
+	}
+	
+	private void reserve(int size) throws IOException {
+		if (count + size > buffer.length) {
+			flushBuffer();
+		}
+	}
+	
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			super.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+	
+	/**
+	 * Index of offset in the write buffer, -1 if the range is not entirely buffered
+	 */
+	private int bufferIndex(long offset, int size) throws IOException {
+		var start = getChannel().position();
+		if (offset >= start && offset + size <= start + count) {
+			return (int) (offset - start);
+		}
+		if (offset + size > start && offset < start + count) {
+			// straddles the buffer boundary
+			flushBuffer();
+		}
+		return -1;
+	}
+	
+	private void pwrite(long offset, int size) throws IOException {
+		var bb = ByteBuffer.wrap(patch, 0, size);
+		while (bb.hasRemaining()) {
+			getChannel().write(bb, offset + bb.position());
+		}
+	}
+	
+	private void encodeShort(byte[] b, int index, short s) {
+		if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
+			SHORT_LE.set(b, index, s);
+		} else {
+			SHORT_BE.set(b, index, s);
+		}
+	}
+	
+	private void encodeInt(byte[] b, int index, int i) {
+		if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
+			INT_LE.set(b, index, i);
+		} else {
+			INT_BE.set(b, index, i);
+		}
 	}
-
 }
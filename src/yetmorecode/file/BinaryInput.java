@@ -0,0 +1,211 @@
+package yetmorecode.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+import yetmorecode.file.text.Codepage;
+import yetmorecode.file.text.StringPool;
+
+/**
+ * Read surface shared by the binary file readers<br>
+ * <br>
+ * Every value can either be read at the current position (advancing it) or
+ * at an absolute file offset (leaving the current position untouched).<br>
+ * The format parsers accept this interface, so they work the same way on
+ * a {@link BinaryFileInputStream} and on a {@link MappedBinaryFileInput}.<br>
+ * <br>
+ * Bulk reads fill caller supplied primitive arrays from a single read of the
+ * underlying data, converting from the reader's byte order.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public interface BinaryInput extends Closeable {
+
+	/**
+	 * Reads the next byte
+	 *
+	 * @return the unsigned byte value or -1 at the end of the file
+	 */
+	public int read() throws IOException;
+
+	/**
+	 * Reads up to len bytes (less only at the end of the file)
+	 */
+	public byte[] readNBytes(int len) throws IOException;
+
+	/**
+	 * Skips over n bytes
+	 *
+	 * @return the number of bytes actually skipped
+	 */
+	public long skip(long n) throws IOException;
+
+	public int readByte(long offset) throws IOException;
+
+	public int readByte() throws IOException;
+
+	public short readShort(long offset) throws IOException;
+
+	public short readShort() throws IOException;
+
+	public int readInt(long offset) throws IOException;
+
+	public int readInt() throws IOException;
+
+	public float readFloat(long offset) throws IOException;
+
+	public float readFloat() throws IOException;
+
+	/**
+	 * Reads a fixed size string at an absolute offset, decoded as {@link Codepage#CP437}
+	 */
+	public String readString(long offset, int size) throws IOException;
+
+	/**
+	 * Reads a fixed size string at the current position, decoded as {@link Codepage#CP437}
+	 */
+	public String readString(int size) throws IOException;
+
+	/**
+	 * Reads a fixed size string at an absolute offset in the given codepage
+	 */
+	public default String readString(long offset, int size, Codepage codepage) throws IOException {
+		return codepage.decode(bulk(offset, size));
+	}
+
+	/**
+	 * Reads a fixed size string at an absolute offset through an interning pool
+	 */
+	public default String readString(long offset, int size, StringPool pool) throws IOException {
+		return pool.intern(bulk(offset, size));
+	}
+
+	/**
+	 * Reads a zero terminated UTF-16LE string (e.g. a VERSIONINFO key) at an absolute offset
+	 *
+	 * @param maxSize maximum number of bytes the string may occupy, including the terminator
+	 */
+	public default String readUtf16String(long offset, int maxSize) throws IOException {
+		var bb = bulk(offset, maxSize & ~1);
+		var bytes = bb.hasArray() ? bb.array() : new byte[bb.remaining()];
+		var base = bb.hasArray() ? bb.arrayOffset() + bb.position() : 0;
+		if (!bb.hasArray()) {
+			bb.get(bb.position(), bytes);
+		}
+		var len = 0;
+		while (len < bb.remaining() && (bytes[base + len] != 0 || bytes[base + len + 1] != 0)) {
+			len += 2;
+		}
+		return new String(bytes, base, len, StandardCharsets.UTF_16LE);
+	}
+
+	/**
+	 * Reads exactly len bytes at an absolute offset into b.<br>
+	 * <br>
+	 * Positional reads never move the current position, so they are safe
+	 * to issue from several threads sharing one reader.
+	 */
+	public void readFully(long offset, byte[] b, int off, int len) throws IOException;
+
+	/**
+	 * Reads exactly len bytes at the current position into b
+	 */
+	public default void readBytes(byte[] b, int off, int len) throws IOException {
+		var p = position();
+		readFully(p, b, off, len);
+		position(p + len);
+	}
+
+	/**
+	 * Reads len 16-bit values at an absolute offset into dst
+	 */
+	public default void readShorts(long offset, short[] dst, int off, int len) throws IOException {
+		bulk(offset, 2 * len).asShortBuffer().get(dst, off, len);
+	}
+
+	/**
+	 * Reads len 16-bit values at the current position into dst
+	 */
+	public default void readShorts(short[] dst, int off, int len) throws IOException {
+		var p = position();
+		readShorts(p, dst, off, len);
+		position(p + 2L * len);
+	}
+
+	/**
+	 * Reads len 32-bit values at an absolute offset into dst
+	 */
+	public default void readInts(long offset, int[] dst, int off, int len) throws IOException {
+		bulk(offset, 4 * len).asIntBuffer().get(dst, off, len);
+	}
+
+	/**
+	 * Reads len 32-bit values at the current position into dst
+	 */
+	public default void readInts(int[] dst, int off, int len) throws IOException {
+		var p = position();
+		readInts(p, dst, off, len);
+		position(p + 4L * len);
+	}
+
+	/**
+	 * Fills the remaining space of dst with 32-bit values read at an absolute offset
+	 */
+	public default void readInts(long offset, IntBuffer dst) throws IOException {
+		dst.put(bulk(offset, 4 * dst.remaining()).asIntBuffer());
+	}
+
+	/**
+	 * Reads len unsigned 32-bit values at an absolute offset into dst
+	 */
+	public default void readUnsignedInts(long offset, long[] dst, int off, int len) throws IOException {
+		var ints = bulk(offset, 4 * len).asIntBuffer();
+		for (int i = 0; i < len; i++) {
+			dst[off + i] = ints.get(i) & 0xffffffffL;
+		}
+	}
+
+	/**
+	 * Reads len 64-bit values at an absolute offset into dst
+	 */
+	public default void readLongs(long offset, long[] dst, int off, int len) throws IOException {
+		bulk(offset, 8 * len).asLongBuffer().get(dst, off, len);
+	}
+
+	/**
+	 * Reads size bytes at offset with a single read, ordered for decoding.<br>
+	 * Readers that can expose their data without copying override this.
+	 */
+	public default ByteBuffer bulk(long offset, int size) throws IOException {
+		var bytes = new byte[size];
+		readFully(offset, bytes, 0, size);
+		return ByteBuffer.wrap(bytes).order(order());
+	}
+
+	/**
+	 * Byte order used to decode multi-byte values
+	 */
+	public ByteOrder order();
+
+	/**
+	 * Size of the underlying data in bytes
+	 */
+	public long size() throws IOException;
+
+	/**
+	 * Current position
+	 */
+	public long position() throws IOException;
+
+	/**
+	 * Moves the current position
+	 *
+	 * @param offset new absolute position
+	 * @return the previous position
+	 */
+	public long position(long offset) throws IOException;
+}
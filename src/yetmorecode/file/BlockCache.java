@@ -0,0 +1,183 @@
+package yetmorecode.file;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Block level read cache with LRU eviction<br>
+ * <br>
+ * The file is split into fixed size blocks. A read loads every block it touches
+ * on first use and serves it from memory afterwards. Once the cached bytes exceed
+ * the byte budget, the least recently used blocks are evicted.<br>
+ * The cache is safe to use from several threads. The lock only guards the block
+ * map, blocks are loaded outside of it, so misses of different threads read
+ * concurrently (two threads missing the same block may both load it).
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class BlockCache {
+
+	/**
+	 * Loads the bytes of a block from the underlying file
+	 */
+	public interface BlockLoader {
+		/**
+		 * @return number of bytes read, or -1 at the end of the file
+		 */
+		int load(long position, ByteBuffer dst) throws IOException;
+	}
+
+	/**
+	 * Default block size (4 KiB)
+	 */
+	public final static int DEFAULT_BLOCK_SIZE = 0x1000;
+
+	private final BlockLoader loader;
+	private final int blockSize;
+	private final long byteBudget;
+
+	/**
+	 * Cached blocks by block number, in access order
+	 */
+	private final LinkedHashMap<Long, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedBytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	public BlockCache(BlockLoader loader, long byteBudget) {
+		this(loader, DEFAULT_BLOCK_SIZE, byteBudget);
+	}
+
+	public BlockCache(BlockLoader loader, int blockSize, long byteBudget) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Invalid block size " + blockSize);
+		}
+		this.loader = loader;
+		this.blockSize = blockSize;
+		this.byteBudget = byteBudget;
+	}
+
+	/**
+	 * Reads up to len bytes at position, fewer only at the end of the file
+	 *
+	 * @return number of bytes read, or -1 if position is at or beyond the end of the file
+	 */
+	public int read(long position, byte[] dst, int off, int len) throws IOException {
+		var done = 0;
+		while (done < len) {
+			var p = position + done;
+			var block = block(p / blockSize);
+			var index = (int) (p % blockSize);
+			if (index >= block.length) {
+				break;
+			}
+			var n = Math.min(len - done, block.length - index);
+			System.arraycopy(block, index, dst, off + done, n);
+			done += n;
+		}
+		return done == 0 && len > 0 ? -1 : done;
+	}
+
+	/**
+	 * Reads exactly len bytes at position
+	 */
+	public void readFully(long position, byte[] dst, int off, int len) throws IOException {
+		if (read(position, dst, off, len) < len) {
+			throw new EOFException("Unexpected end of file at offset " + position);
+		}
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public long getByteBudget() {
+		return byteBudget;
+	}
+
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	/**
+	 * Number of block lookups served from memory
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Number of block lookups that had to be loaded
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Drops all cached blocks, the counters are kept
+	 */
+	public synchronized void clear() {
+		blocks.clear();
+		cachedBytes = 0;
+	}
+
+	private byte[] block(long number) throws IOException {
+		var block = lookup(number);
+		if (block != null) {
+			return block;
+		}
+		return insert(number, load(number * blockSize));
+	}
+
+	private synchronized byte[] lookup(long number) {
+		var block = blocks.get(number);
+		if (block != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return block;
+	}
+
+	/**
+	 * Adds a loaded block, unless another thread has added it in the meantime
+	 */
+	private synchronized byte[] insert(long number, byte[] block) {
+		var cached = blocks.putIfAbsent(number, block);
+		if (cached != null) {
+			return cached;
+		}
+		cachedBytes += block.length;
+		evict();
+		return block;
+	}
+
+	private byte[] load(long position) throws IOException {
+		var bb = ByteBuffer.allocate(blockSize);
+		while (bb.hasRemaining()) {
+			if (loader.load(position + bb.position(), bb) < 0) {
+				break;
+			}
+		}
+		if (bb.hasRemaining()) {
+			// last block of the file
+			var block = new byte[bb.position()];
+			System.arraycopy(bb.array(), 0, block, 0, block.length);
+			return block;
+		}
+		return bb.array();
+	}
+
+	private void evict() {
+		Iterator<byte[]> it = blocks.values().iterator();
+		// the most recently used block always stays
+		while (cachedBytes > byteBudget && blocks.size() > 1) {
+			cachedBytes -= it.next().length;
+			it.remove();
+		}
+	}
+}
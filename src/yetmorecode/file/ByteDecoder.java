@@ -0,0 +1,121 @@
+package yetmorecode.file;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Decoder for multi-byte values stored in a byte array<br>
+ * <br>
+ * There is one final implementation per byte/word ordering. A reader picks its decoder
+ * once (e.g. per module from the LX header ordering fields) and then decodes without
+ * checking the byte order for every value.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public abstract class ByteDecoder {
+
+	private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+	/**
+	 * Little endian bytes, little endian words (Intel)
+	 */
+	public final static ByteDecoder LITTLE_ENDIAN = new LittleEndian();
+
+	/**
+	 * Big endian bytes, big endian words
+	 */
+	public final static ByteDecoder BIG_ENDIAN = new BigEndian();
+
+	/**
+	 * Little endian bytes within each word, high order word first
+	 */
+	public final static ByteDecoder LITTLE_ENDIAN_WORD_SWAPPED = new LittleEndianWordSwapped();
+
+	/**
+	 * Big endian bytes within each word, low order word first
+	 */
+	public final static ByteDecoder BIG_ENDIAN_WORD_SWAPPED = new BigEndianWordSwapped();
+
+	public static ByteDecoder forOrder(ByteOrder order) {
+		return order == ByteOrder.LITTLE_ENDIAN ? LITTLE_ENDIAN : BIG_ENDIAN;
+	}
+
+	/**
+	 * @param byteOrder order of the bytes within a 16-bit word
+	 * @param wordOrder order of the 16-bit words within a 32-bit value
+	 */
+	public static ByteDecoder forOrder(ByteOrder byteOrder, ByteOrder wordOrder) {
+		if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
+			return wordOrder == ByteOrder.LITTLE_ENDIAN ? LITTLE_ENDIAN : LITTLE_ENDIAN_WORD_SWAPPED;
+		}
+		return wordOrder == ByteOrder.BIG_ENDIAN ? BIG_ENDIAN : BIG_ENDIAN_WORD_SWAPPED;
+	}
+
+	public abstract short getShort(byte[] b, int index);
+
+	public abstract int getInt(byte[] b, int index);
+
+	public int getUnsignedShort(byte[] b, int index) {
+		return getShort(b, index) & 0xffff;
+	}
+
+	public long getUnsignedInt(byte[] b, int index) {
+		return getInt(b, index) & 0xffffffffL;
+	}
+
+	public float getFloat(byte[] b, int index) {
+		return Float.intBitsToFloat(getInt(b, index));
+	}
+
+	private static final class LittleEndian extends ByteDecoder {
+		@Override
+		public short getShort(byte[] b, int index) {
+			return (short) SHORT_LE.get(b, index);
+		}
+
+		@Override
+		public int getInt(byte[] b, int index) {
+			return (int) INT_LE.get(b, index);
+		}
+	}
+
+	private static final class BigEndian extends ByteDecoder {
+		@Override
+		public short getShort(byte[] b, int index) {
+			return (short) SHORT_BE.get(b, index);
+		}
+
+		@Override
+		public int getInt(byte[] b, int index) {
+			return (int) INT_BE.get(b, index);
+		}
+	}
+
+	private static final class LittleEndianWordSwapped extends ByteDecoder {
+		@Override
+		public short getShort(byte[] b, int index) {
+			return (short) SHORT_LE.get(b, index);
+		}
+
+		@Override
+		public int getInt(byte[] b, int index) {
+			return ((short) SHORT_LE.get(b, index)) << 16 | ((short) SHORT_LE.get(b, index + 2) & 0xffff);
+		}
+	}
+
+	private static final class BigEndianWordSwapped extends ByteDecoder {
+		@Override
+		public short getShort(byte[] b, int index) {
+			return (short) SHORT_BE.get(b, index);
+		}
+
+		@Override
+		public int getInt(byte[] b, int index) {
+			return ((short) SHORT_BE.get(b, index + 2)) << 16 | ((short) SHORT_BE.get(b, index) & 0xffff);
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package yetmorecode.file;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import yetmorecode.file.source.ByteSource;
+import yetmorecode.file.text.Codepage;
+
+/**
+ * Binary reader on top of any {@link ByteSource}<br>
+ * <br>
+ * Sequential reads are served from an internal read-ahead window, so byte-wise
+ * parsers (e.g. PCX run length decoding) do not hit the source for every byte.<br>
+ * Reads at an absolute offset go straight to the source and leave the current
+ * position untouched.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class ByteSourceInput implements BinaryInput {
+
+	/**
+	 * Size of the read-ahead window for sequential reads
+	 */
+	public final static int WINDOW_SIZE = 0x2000;
+
+	/**
+	 * Per-thread decode buffer for positional reads
+	 */
+	private static final ThreadLocal<ByteBuffer> POSITIONAL_SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(8));
+
+	private final ByteSource source;
+
+	private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+
+	private ByteDecoder decoder = ByteDecoder.LITTLE_ENDIAN;
+
+	/**
+	 * Current position
+	 */
+	private long position = 0;
+
+	/**
+	 * Read-ahead window, holding the bytes at windowStart .. windowStart + window.limit()
+	 */
+	private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE).limit(0);
+	private long windowStart = 0;
+
+	public ByteSourceInput(ByteSource source) {
+		this.source = source;
+	}
+
+	public ByteSourceInput(ByteSource source, ByteOrder order) {
+		this(source);
+		byteOrder = order;
+		decoder = ByteDecoder.forOrder(order);
+	}
+
+	public ByteSource getSource() {
+		return source;
+	}
+
+	@Override
+	public long size() throws IOException {
+		return source.size();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!available(1)) {
+			return -1;
+		}
+		return window.get((int) (position++ - windowStart)) & 0xff;
+	}
+
+	@Override
+	public byte[] readNBytes(int len) throws IOException {
+		var n = (int) Math.max(0, Math.min(len, source.size() - position));
+		var bytes = new byte[n];
+		readFully(position, bytes, 0, n);
+		position += n;
+		return bytes;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		var skipped = Math.max(0, Math.min(n, source.size() - position));
+		position += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int readByte(long offset) throws IOException {
+		var bb = POSITIONAL_SCRATCH.get().clear().limit(1);
+		if (source.read(offset, bb) < 1) {
+			return -1;
+		}
+		return bb.array()[0] & 0xff;
+	}
+
+	@Override
+	public int readByte() throws IOException {
+		return read();
+	}
+
+	@Override
+	public short readShort(long offset) throws IOException {
+		return decoder.getShort(pread(offset, 2), 0);
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		require(2);
+		var i = decoder.getShort(window.array(), (int) (position - windowStart));
+		position += 2;
+		return i;
+	}
+
+	@Override
+	public int readInt(long offset) throws IOException {
+		return decoder.getInt(pread(offset, 4), 0);
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		require(4);
+		var i = decoder.getInt(window.array(), (int) (position - windowStart));
+		position += 4;
+		return i;
+	}
+
+	@Override
+	public float readFloat(long offset) throws IOException {
+		return Float.intBitsToFloat(readInt(offset));
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	public String readString(long offset, int size) throws IOException {
+		var bytes = new byte[size];
+		readFully(offset, bytes, 0, size);
+		return Codepage.CP437.decode(bytes);
+	}
+
+	@Override
+	public String readString(int size) throws IOException {
+		return Codepage.CP437.decode(readNBytes(size));
+	}
+
+	@Override
+	public void readFully(long offset, byte[] b, int off, int len) throws IOException {
+		source.readFully(offset, ByteBuffer.wrap(b, off, len));
+	}
+
+	@Override
+	public ByteOrder order() {
+		return byteOrder;
+	}
+
+	@Override
+	public long position() {
+		return position;
+	}
+
+	@Override
+	public long position(long offset) {
+		var old = position;
+		position = offset;
+		return old;
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
+	/**
+	 * Makes sure the window holds size bytes at the current position
+	 *
+	 * @return false if the source ends first
+	 */
+	private boolean available(int size) throws IOException {
+		if (position >= windowStart && position + size <= windowStart + window.limit()) {
+			return true;
+		}
+		window.clear();
+		windowStart = position;
+		while (window.position() < size) {
+			if (source.read(windowStart + window.position(), window) < 0) {
+				break;
+			}
+		}
+		window.flip();
+		return window.limit() >= size;
+	}
+
+	private void require(int size) throws IOException {
+		if (!available(size)) {
+			throw new EOFException("Unexpected end of source at offset " + position);
+		}
+	}
+
+	/**
+	 * Reads exactly size bytes at offset into the per-thread scratch buffer
+	 */
+	private byte[] pread(long offset, int size) throws IOException {
+		var bb = POSITIONAL_SCRATCH.get().clear().limit(size);
+		source.readFully(offset, bb);
+		return bb.array();
+	}
+
+}
@@ -0,0 +1,189 @@
+package yetmorecode.file;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import yetmorecode.file.text.Codepage;
+
+/**
+ * Memory-mapped random access reader<br>
+ * <br>
+ * The whole file is mapped read-only on construction. Reads at absolute offsets
+ * are served straight from the mapping, without seeking and without any system call.<br>
+ * Files larger than 2 GiB cannot be mapped into a single buffer and are rejected.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class MappedBinaryFileInput implements BinaryInput {
+
+	private final MappedByteBuffer buffer;
+
+	private int position = 0;
+
+	public MappedBinaryFileInput(String name) throws IOException {
+		this(new File(name));
+	}
+
+	public MappedBinaryFileInput(String name, ByteOrder order) throws IOException {
+		this(new File(name), order);
+	}
+
+	public MappedBinaryFileInput(File file) throws IOException {
+		this(file, ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public MappedBinaryFileInput(File file, ByteOrder order) throws IOException {
+		buffer = map(file);
+		buffer.order(order);
+	}
+
+	private static MappedByteBuffer map(File file) throws IOException {
+		try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			var size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large to be mapped (" + size + " bytes)");
+			}
+			return channel.map(MapMode.READ_ONLY, 0, size);
+		}
+	}
+
+	/**
+	 * Size of the mapped file in bytes
+	 */
+	@Override
+	public long size() {
+		return buffer.limit();
+	}
+
+	@Override
+	public int read() {
+		if (position >= buffer.limit()) {
+			return -1;
+		}
+		return buffer.get(position++) & 0xff;
+	}
+
+	@Override
+	public byte[] readNBytes(int len) {
+		var n = Math.min(len, buffer.limit() - position);
+		var bytes = new byte[n];
+		buffer.get(position, bytes);
+		position += n;
+		return bytes;
+	}
+
+	@Override
+	public long skip(long n) {
+		var skipped = Math.max(0, Math.min(n, buffer.limit() - position));
+		position += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int readByte(long offset) throws IOException {
+		return buffer.get(index(offset, 1)) & 0xff;
+	}
+
+	@Override
+	public int readByte() {
+		return read();
+	}
+
+	@Override
+	public short readShort(long offset) throws IOException {
+		return buffer.getShort(index(offset, 2));
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		var i = buffer.getShort(index(position, 2));
+		position += 2;
+		return i;
+	}
+
+	@Override
+	public int readInt(long offset) throws IOException {
+		return buffer.getInt(index(offset, 4));
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		var i = buffer.getInt(index(position, 4));
+		position += 4;
+		return i;
+	}
+
+	@Override
+	public float readFloat(long offset) throws IOException {
+		return buffer.getFloat(index(offset, 4));
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		var f = buffer.getFloat(index(position, 4));
+		position += 4;
+		return f;
+	}
+
+	@Override
+	public String readString(long offset, int size) throws IOException {
+		return Codepage.CP437.decode(bulk(offset, size));
+	}
+
+	@Override
+	public String readString(int size) {
+		return Codepage.CP437.decode(readNBytes(size));
+	}
+
+	@Override
+	public void readFully(long offset, byte[] b, int off, int len) throws IOException {
+		buffer.get(index(offset, len), b, off, len);
+	}
+
+	@Override
+	public ByteBuffer bulk(long offset, int size) throws IOException {
+		return buffer.slice(index(offset, size), size).order(buffer.order());
+	}
+
+	@Override
+	public ByteOrder order() {
+		return buffer.order();
+	}
+
+	@Override
+	public long position() {
+		return position;
+	}
+
+	@Override
+	public long position(long offset) throws IOException {
+		if (offset < 0 || offset > buffer.limit()) {
+			throw new EOFException("Position " + offset + " is outside of the mapped file");
+		}
+		var old = position;
+		position = (int) offset;
+		return old;
+	}
+
+	/**
+	 * The mapping stays valid until the buffer is garbage collected,
+	 * so there is nothing to release here.
+	 */
+	@Override
+	public void close() {
+	}
+
+	private int index(long offset, int size) throws EOFException {
+		if (offset < 0 || offset > buffer.limit() - size) {
+			throw new EOFException("Cannot read " + size + " bytes at offset " + offset);
+		}
+		return (int) offset;
+	}
+}
@@ -0,0 +1,228 @@
+package yetmorecode.file.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import yetmorecode.file.BinaryInput;
+import yetmorecode.file.format.dos16m.BwHeader;
+import yetmorecode.file.format.lx.LinearHeader;
+import yetmorecode.file.format.mz.MzHeader;
+import yetmorecode.file.format.mz.MzOverlayIndex;
+import yetmorecode.file.format.mz.MzOverlayRegion;
+
+/**
+ * Locates the executables embedded in bound DOS extender files<br>
+ * <br>
+ * Bound DOS/4GW and DOS/16M files chain their headers: a MZ stub points to a
+ * LE/LX header via fileAddressNewExe, DOS/16M BW headers point to the next spliced
+ * image via next_header_pos, and further MZ or BW images follow the end of an image.
+ * {@link #locate()} follows these chains and falls back to {@link #scan()} if they
+ * do not lead to a linear executable.<br>
+ * <br>
+ * The scan reads the file in chunks (views of the mapping on a
+ * {@link yetmorecode.file.MappedBinaryFileInput}) and tests eight bytes at a time
+ * for the first signature byte ('L' or 'B'). Only those candidates are compared
+ * against the signatures and validated against their header fields.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class HeaderLocator {
+	public final static int CHUNK_SIZE = 0x10000;
+	
+	private final static long ONES = 0x0101010101010101L;
+	private final static long HIGHS = 0x8080808080808080L;
+	private final static long L = 'L' * ONES;
+	private final static long B = 'B' * ONES;
+	
+	private final BinaryInput input;
+	
+	private final long size;
+	
+	public HeaderLocator(BinaryInput input) throws IOException {
+		this.input = input;
+		size = input.size();
+	}
+	
+	/**
+	 * Offsets of all headers (MZ, BW, LE, LX, LC) reachable from the start of the file,
+	 * or found by a scan if no linear executable is reachable
+	 */
+	public long[] locate() throws IOException {
+		var offsets = follow(0);
+		for (var offset : offsets) {
+			if (isLinear(typeAt(offset))) {
+				return offsets;
+			}
+		}
+		return merge(offsets, scan());
+	}
+	
+	/**
+	 * Offsets of all headers reachable from the header at offset, ascending
+	 */
+	public long[] follow(long offset) throws IOException {
+		var found = new TreeSet<Long>();
+		var pending = new ArrayDeque<Long>();
+		pending.add(offset);
+		while (!pending.isEmpty()) {
+			var position = pending.poll();
+			if (found.contains(position)) {
+				continue;
+			}
+			var type = typeAt(position);
+			if (type == MzOverlayRegion.TYPE_UNKNOWN) {
+				continue;
+			}
+			found.add(position);
+			if (type == MzOverlayRegion.TYPE_MZ) {
+				var mz = MzHeader.fromStream(input, position);
+				if (mz.fileAddressNewExe != 0) {
+					pending.add(position + (mz.fileAddressNewExe & 0xffffffffL));
+				}
+				next(pending, position, mz.getImageSize());
+			} else if (type == MzOverlayRegion.TYPE_BW) {
+				// next_header_pos at 1Ch, the image size fields match MZ
+				var next = input.bulk(position + 0x1c, 4).order(ByteOrder.LITTLE_ENDIAN).getInt(0) & 0xffffffffL;
+				if (next > position && next < size) {
+					pending.add(next);
+				}
+				next(pending, position, MzHeader.fromStream(input, position).getImageSize());
+			}
+		}
+		return found.stream().mapToLong(Long::longValue).toArray();
+	}
+	
+	/**
+	 * Offsets of all valid headers in the file, ascending
+	 */
+	public long[] scan() throws IOException {
+		return scan(0, size);
+	}
+	
+	/**
+	 * Offsets of all valid headers starting in [from, to), ascending
+	 */
+	public long[] scan(long from, long to) throws IOException {
+		to = Math.min(to, size);
+		var found = new long[16];
+		var count = 0;
+		for (var start = from; start < to; start += CHUNK_SIZE) {
+			var n = (int) Math.min(to - start, CHUNK_SIZE);
+			// one byte more, so a signature can straddle the chunk boundary
+			var bb = input.bulk(start, (int) Math.min(size - start, n + 1)).order(ByteOrder.LITTLE_ENDIAN);
+			for (var i = 0; i < n; i += 8) {
+				if (i + 8 <= bb.limit()) {
+					var v = bb.getLong(i);
+					if (!hasByte(v ^ L) && !hasByte(v ^ B)) {
+						continue;
+					}
+				}
+				for (var j = i; j < Math.min(n, i + 8); j++) {
+					if (isCandidate(bb, j) && typeAt(start + j) != MzOverlayRegion.TYPE_UNKNOWN) {
+						if (count == found.length) {
+							found = Arrays.copyOf(found, count * 2);
+						}
+						found[count++] = start + j;
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+	
+	/**
+	 * Type of a valid header at offset, one of the {@link MzOverlayRegion} TYPE_* constants
+	 */
+	public int typeAt(long offset) throws IOException {
+		if (offset < 0 || offset >= size) {
+			return MzOverlayRegion.TYPE_UNKNOWN;
+		}
+		var type = MzOverlayIndex.detect(input, offset, size);
+		switch (type) {
+		case MzOverlayRegion.TYPE_LE:
+		case MzOverlayRegion.TYPE_LX:
+		case MzOverlayRegion.TYPE_LC:
+			return isValidLinear(offset) ? type : MzOverlayRegion.TYPE_UNKNOWN;
+		case MzOverlayRegion.TYPE_BW:
+			return isValidBw(offset) ? type : MzOverlayRegion.TYPE_UNKNOWN;
+		default:
+			return type;
+		}
+	}
+	
+	public static boolean isLinear(int type) {
+		return type == MzOverlayRegion.TYPE_LE || type == MzOverlayRegion.TYPE_LX || type == MzOverlayRegion.TYPE_LC;
+	}
+	
+	/**
+	 * Byte and word order are 0 or 1, the format level is 0 and the cpu type is a documented one
+	 */
+	private boolean isValidLinear(long offset) throws IOException {
+		if (size - offset < LinearHeader.SIZE) {
+			return false;
+		}
+		var bb = input.bulk(offset, 0x10).order(ByteOrder.LITTLE_ENDIAN);
+		var byteOrder = bb.get(0x02);
+		var wordOrder = bb.get(0x03);
+		if ((byteOrder & ~1) != 0 || (wordOrder & ~1) != 0) {
+			return false;
+		}
+		if (byteOrder == LinearHeader.BYTEORDER_BE) {
+			bb.order(ByteOrder.BIG_ENDIAN);
+		}
+		var cpu = bb.getShort(0x08);
+		return bb.getInt(0x04) == 0 && LinearHeader.isKnownCpu(cpu);
+	}
+	
+	/**
+	 * The image is not empty and fits into the file, the GDT image consists of whole descriptors
+	 */
+	private boolean isValidBw(long offset) throws IOException {
+		var bb = input.bulk(offset, MzHeader.SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		var lastPageBytes = bb.getShort(0x02) & 0xffff;
+		var pages = bb.getShort(0x04) & 0xffff;
+		if (lastPageBytes >= MzHeader.BLOCK_SIZE || pages == 0) {
+			return false;
+		}
+		var imageSize = MzHeader.fromBuffer(bb, 0).getImageSize();
+		var gdtImageSize = bb.getShort(0x38) & 0xffff;
+		return offset + imageSize <= size && gdtImageSize % 8 == 0;
+	}
+	
+	/**
+	 * Quick test on the first two bytes, before the header fields are looked at
+	 */
+	private static boolean isCandidate(ByteBuffer bb, int index) {
+		if (index + 1 >= bb.limit()) {
+			return false;
+		}
+		var signature = bb.getShort(index);
+		return signature == LinearHeader.SIGNATURE_LE
+			|| signature == LinearHeader.SIGNATURE_LX
+			|| signature == LinearHeader.SIGNATURE_LC
+			|| signature == BwHeader.DOS16M_SIGNATURE;
+	}
+	
+	private void next(ArrayDeque<Long> pending, long position, long imageSize) {
+		if (imageSize > 0 && position + imageSize < size) {
+			pending.add(position + imageSize);
+		}
+	}
+	
+	/**
+	 * Whether any byte of v is zero
+	 */
+	private static boolean hasByte(long v) {
+		return ((v - ONES) & ~v & HIGHS) != 0;
+	}
+	
+	private static long[] merge(long[] a, long[] b) {
+		var merged = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, merged, a.length, b.length);
+		return Arrays.stream(merged).sorted().distinct().toArray();
+	}
+}
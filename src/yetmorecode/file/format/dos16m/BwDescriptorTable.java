@@ -0,0 +1,163 @@
+package yetmorecode.file.format.dos16m;
+
+import java.io.IOException;
+
+import yetmorecode.file.BinaryInput;
+
+/**
+ * GDT descriptors of a DOS/16M image, decoded into parallel primitive columns<br>
+ * <br>
+ * Descriptor i belongs to selector firstSelector + 8 * i.<br>
+ * <br>
+ * Bases in the GDT image are taken to be relative to the program image, the loader
+ * adding the load address at run time. {@link #getFileOffset(BwHeader, int)} and
+ * {@link BwRelocator} rely on this. The GDT image format is not documented publicly
+ * and this has not been confirmed against an image produced by MAKEPM, so callers
+ * should check {@link #fitsImage(BwHeader, int)} before reading through a base.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class BwDescriptorTable {
+	/**
+	 * Granularity flag, the limit counts 4k pages
+	 */
+	public final static int FLAG_GRANULARITY = 0x800;
+	
+	/**
+	 * Default operation size flag (32-bit segment)
+	 */
+	public final static int FLAG_32BIT = 0x400;
+	
+	/**
+	 * Present flag of the access byte
+	 */
+	public final static int ACCESS_PRESENT = 0x80;
+	
+	/**
+	 * Code segment flag of the access byte
+	 */
+	public final static int ACCESS_CODE = 0x08;
+	
+	/**
+	 * Selector of descriptor 0
+	 */
+	public int firstSelector;
+	
+	/**
+	 * Segment base addresses
+	 */
+	public int[] base;
+	
+	/**
+	 * Segment limits in bytes (granularity applied)
+	 */
+	public int[] limit;
+	
+	/**
+	 * Access byte in the low 8 bits, flags (granularity, size, ...) in bits 8-11
+	 */
+	public short[] access;
+	
+	public int getCount() {
+		return base.length;
+	}
+	
+	/**
+	 * Index of the descriptor of a selector (RPL and TI bits ignored), -1 if it is not in the table
+	 */
+	public int indexOf(int selector) {
+		var index = ((selector & ~7) - firstSelector) >> 3;
+		return index >= 0 && index < base.length ? index : -1;
+	}
+	
+	public int getSelector(int index) {
+		return firstSelector + 8 * index;
+	}
+	
+	/**
+	 * Size of segment i in bytes
+	 */
+	public long getSize(int index) {
+		return (limit[index] & 0xffffffffL) + 1;
+	}
+	
+	/**
+	 * Absolute file offset of the data of segment i, assuming its base is relative to the program image
+	 */
+	public long getFileOffset(BwHeader header, int index) {
+		return header.getProgramOffset() + (base[index] & 0xffffffffL);
+	}
+	
+	/**
+	 * Whether segment i lies within the program image when its base is taken relative
+	 * to the program image, i.e. whether {@link #getFileOffset(BwHeader, int)} is plausible
+	 */
+	public boolean fitsImage(BwHeader header, int index) {
+		var programSize = header.offset + header.getImageSize() - header.getProgramOffset();
+		return (base[index] & 0xffffffffL) + getSize(index) <= programSize;
+	}
+	
+	/**
+	 * Raw descriptor i, e.g. to build a runtime GDT
+	 */
+	public long toDescriptor(int index) {
+		var b = base[index] & 0xffffffffL;
+		var flags = access[index] >> 8 & 0xf;
+		var l = limit[index] & 0xffffffffL;
+		if ((flags & (FLAG_GRANULARITY >> 8)) != 0) {
+			l >>>= 12;
+		}
+		return (l & 0xffff)
+			| (b & 0xffffff) << 16
+			| (access[index] & 0xffL) << 40
+			| (l >> 16 & 0xf) << 48
+			| (long) flags << 52
+			| (b >> 24) << 56;
+	}
+	
+	/**
+	 * Copy of the table with every base moved by delta, e.g. to the linear load address
+	 */
+	public BwDescriptorTable rebase(int delta) {
+		var table = new BwDescriptorTable();
+		table.firstSelector = firstSelector;
+		table.limit = limit;
+		table.access = access;
+		table.base = new int[base.length];
+		for (int i = 0; i < base.length; i++) {
+			table.base[i] = base[i] + delta;
+		}
+		return table;
+	}
+	
+	/**
+	 * Decodes raw descriptors (as read by {@link BwHeader#readGdtImage(BinaryInput)})
+	 */
+	public static BwDescriptorTable fromDescriptors(long[] descriptors, int firstSelector) {
+		var table = new BwDescriptorTable();
+		var n = descriptors.length;
+		table.firstSelector = firstSelector;
+		table.base = new int[n];
+		table.limit = new int[n];
+		table.access = new short[n];
+		for (int i = 0; i < n; i++) {
+			var d = descriptors[i];
+			table.base[i] = (int) (d >>> 16 & 0xffffff | (d >>> 56) << 24);
+			var flags = (int) (d >>> 52 & 0xf);
+			var l = (int) (d & 0xffff | (d >>> 48 & 0xf) << 16);
+			if ((flags & (FLAG_GRANULARITY >> 8)) != 0) {
+				l = l << 12 | 0xfff;
+			}
+			table.limit[i] = l;
+			table.access[i] = (short) ((d >>> 40 & 0xff) | flags << 8);
+		}
+		return table;
+	}
+	
+	/**
+	 * Reads and decodes the GDT image of a BW image
+	 */
+	public static BwDescriptorTable fromStream(BinaryInput input, BwHeader header) throws IOException {
+		return fromDescriptors(header.readGdtImage(input), header.getFirstSelector());
+	}
+}
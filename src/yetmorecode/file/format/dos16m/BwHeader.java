@@ -1,8 +1,54 @@
 package yetmorecode.file.format.dos16m;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import yetmorecode.file.BinaryInput;
+import yetmorecode.file.format.mz.MzHeader;
+import yetmorecode.file.text.Codepage;
+
+/**
+ * DOS/16M BW header (of a .EXP image, possibly spliced into a bound executable)<br>
+ * <br>
+ * The first 0x1C bytes mirror a MZ header. The GDT image starts at 30h and its
+ * first 16 descriptors overlay the rest of the header (30h-AFh): gdtimage[0..1] are
+ * options..transfer_buffer_size, gdtimage[2..15] are reserved6 and EXP_path. The
+ * remaining descriptors follow the header, the program image follows the GDT image.
+ * 
+ * @author https://github.com/yetmorecode
+ */
 public class BwHeader {
 	public static final short DOS16M_SIGNATURE = 0x5742;
 	
+	/**
+	 * Size of a BW header
+	 */
+	public final static int SIZE = 0xb0;
+	
+	/**
+	 * Offset of the GDT image relative to the header
+	 */
+	public final static int GDT_IMAGE_OFFSET = 0x30;
+	
+	/**
+	 * Size of a descriptor
+	 */
+	public final static int DESCRIPTOR_SIZE = 8;
+	
+	/**
+	 * first_selector value 0 means this selector
+	 */
+	public final static int DEFAULT_FIRST_SELECTOR = 0x80;
+	
+	/**
+	 * Absolute file offset of the header
+	 */
+	public long offset;
+	
 	public short signature;          /* BW signature to mark valid file  */
     public short last_page_bytes;    /* length of image mod 512          */
     public short pages_in_file;      /* number of 512 byte pages         */
@@ -23,7 +69,7 @@ public class BwHeader {
     public short last_sel_used;      /* last selector value used         */
     public short pmem_alloc;         /* private xm amount KB if nonzero  */
     public short alloc_incr;         /* auto ExtReserve amount, in KB    */
-    public byte[] reserved4;
+    public byte[] reserved4 = new byte[6];
     /* the following used to be referenced as gdtimage[0..1] */
     public short options;            /* runtime options                  */
     public short trans_stack_sel;    /* sel of transparent stack         */
@@ -35,7 +81,177 @@ public class BwHeader {
     public byte reserved5;
     public short transfer_buffer_size;   /* default in bytes, 0 => 8KB   */
     /* the following used to be referenced as gdtimage[2..15] */
-    public byte[] reserved6;
-    public byte[] EXP_path;       /* original .EXP file name  */
+    public byte[] reserved6 = new byte[48];
+    public byte[] EXP_path = new byte[64];       /* original .EXP file name  */
     /* gdtimage[16..gdtimage_size] follows immediately, then program image follows */
+	
+	/**
+	 * Original .EXP file name
+	 */
+	public String getExpPath() {
+		var length = 0;
+		while (length < EXP_path.length && EXP_path[length] != 0) {
+			length++;
+		}
+		return Codepage.CP437.decode(EXP_path, 0, length);
+	}
+	
+	/**
+	 * Size of the image in the file as given by pages_in_file and last_page_bytes
+	 */
+	public long getImageSize() {
+		var pages = pages_in_file & 0xffff;
+		var last = last_page_bytes & 0xffff;
+		if (pages == 0) {
+			return 0;
+		}
+		return last == 0 ? (long) pages * MzHeader.BLOCK_SIZE : (long) (pages - 1) * MzHeader.BLOCK_SIZE + last;
+	}
+	
+	/**
+	 * Selector of the first descriptor of the GDT image
+	 */
+	public int getFirstSelector() {
+		return first_selector == 0 ? DEFAULT_FIRST_SELECTOR : first_selector & 0xffff;
+	}
+	
+	/**
+	 * Number of descriptors in the GDT image
+	 */
+	public int getDescriptorCount() {
+		return (gdtimage_size & 0xffff) / DESCRIPTOR_SIZE;
+	}
+	
+	/**
+	 * Absolute file offset of the GDT image
+	 */
+	public long getGdtImageOffset() {
+		return offset + GDT_IMAGE_OFFSET;
+	}
+	
+	/**
+	 * Absolute file offset of the program image following the GDT image
+	 */
+	public long getProgramOffset() {
+		return getGdtImageOffset() + (gdtimage_size & 0xffff);
+	}
+	
+	/**
+	 * Reads the GDT image, one raw descriptor per long, with a single read
+	 */
+	public long[] readGdtImage(BinaryInput input) throws IOException {
+		var descriptors = new long[getDescriptorCount()];
+		if (descriptors.length > 0) {
+			input.bulk(getGdtImageOffset(), descriptors.length * DESCRIPTOR_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.asLongBuffer()
+				.get(descriptors);
+		}
+		return descriptors;
+	}
+	
+	/**
+	 * Reads a BW header with a single read of {@link #SIZE} bytes at the given offset.<br>
+	 * <br>
+	 * The current position of input is left untouched.
+	 */
+	public static BwHeader fromStream(BinaryInput input, long offset) throws IOException {
+		var header = fromBuffer(input.bulk(offset, SIZE), 0);
+		header.offset = offset;
+		return header;
+	}
+	
+	/**
+	 * Decodes a BW header from the {@link #SIZE} bytes at an absolute index of the buffer
+	 */
+	public static BwHeader fromBuffer(ByteBuffer bb, int index) {
+		if (bb.order() != ByteOrder.LITTLE_ENDIAN) {
+			bb = bb.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		}
+		var header = new BwHeader();
+		header.signature = bb.getShort(index);
+		header.last_page_bytes = bb.getShort(index + 0x02);
+		header.pages_in_file = bb.getShort(index + 0x04);
+		header.reserved1 = bb.getShort(index + 0x06);
+		header.reserved2 = bb.getShort(index + 0x08);
+		header.min_alloc = bb.getShort(index + 0x0a);
+		header.max_alloc = bb.getShort(index + 0x0c);
+		header.stack_seg = bb.getShort(index + 0x0e);
+		header.stack_ptr = bb.getShort(index + 0x10);
+		header.first_reloc_sel = bb.getShort(index + 0x12);
+		header.init_ip = bb.getShort(index + 0x14);
+		header.code_seg = bb.getShort(index + 0x16);
+		header.runtime_gdt_size = bb.getShort(index + 0x18);
+		header.MAKEPM_version = bb.getShort(index + 0x1a);
+		header.next_header_pos = bb.getInt(index + 0x1c);
+		header.cv_info_offset = bb.getInt(index + 0x20);
+		header.last_sel_used = bb.getShort(index + 0x24);
+		header.pmem_alloc = bb.getShort(index + 0x26);
+		header.alloc_incr = bb.getShort(index + 0x28);
+		bb.get(index + 0x2a, header.reserved4);
+		header.options = bb.getShort(index + 0x30);
+		header.trans_stack_sel = bb.getShort(index + 0x32);
+		header.exp_flags = bb.getShort(index + 0x34);
+		header.program_size = bb.getShort(index + 0x36);
+		header.gdtimage_size = bb.getShort(index + 0x38);
+		header.first_selector = bb.getShort(index + 0x3a);
+		header.default_mem_strategy = bb.get(index + 0x3c);
+		header.reserved5 = bb.get(index + 0x3d);
+		header.transfer_buffer_size = bb.getShort(index + 0x3e);
+		bb.get(index + 0x40, header.reserved6);
+		bb.get(index + 0x70, header.EXP_path);
+		return header;
+	}
+	
+	/**
+	 * Lazily walks the chain of spliced .EXP images starting with the BW header at offset.<br>
+	 * <br>
+	 * Each header is only read when the iterator gets to it. The chain ends at a
+	 * next_header_pos of 0, at a position that does not lead forward, or at a
+	 * header without a valid signature. Read errors surface as {@link UncheckedIOException}.
+	 */
+	public static Iterable<BwHeader> splices(BinaryInput input, long offset) {
+		return () -> new Iterator<BwHeader>() {
+			/**
+			 * Offset of the next header, -1 at the end of the chain
+			 */
+			private long next = offset;
+			
+			/**
+			 * Whether the signature at next has been checked
+			 */
+			private boolean checked = false;
+			
+			@Override
+			public boolean hasNext() {
+				if (!checked) {
+					checked = true;
+					try {
+						if (next >= 0 && (next + SIZE > input.size() || input.bulk(next, 2).order(ByteOrder.LITTLE_ENDIAN).getShort(0) != DOS16M_SIGNATURE)) {
+							next = -1;
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return next >= 0;
+			}
+			
+			@Override
+			public BwHeader next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				try {
+					var header = fromStream(input, next);
+					var position = header.next_header_pos & 0xffffffffL;
+					next = position > header.offset ? position : -1;
+					checked = false;
+					return header;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
 }
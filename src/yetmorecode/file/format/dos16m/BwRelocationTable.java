@@ -0,0 +1,144 @@
+package yetmorecode.file.format.dos16m;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import yetmorecode.file.BinaryInput;
+import yetmorecode.file.exception.InvalidHeaderException;
+
+/**
+ * Relocation list of a DOS/16M image, referenced by {@link BwHeader#first_reloc_sel}<br>
+ * <br>
+ * Each relocation marks a word in the program image that holds a selector.
+ * Entries are packed as selector &lt;&lt; 16 | offset, like the MZ relocation table.<br>
+ * <br>
+ * The on-disk layout is not documented publicly and has not been verified against
+ * MAKEPM output or a reference loader. This decoder assumes groups of
+ * <pre>
+ * word count, word selector, count * word offset
+ * </pre>
+ * ending with a count of 0 or the end of the list. Since the layout is an assumption,
+ * it is checked strictly: every group must reference a selector of the GDT image and
+ * an offset within that selector's segment, anything else is rejected.<br>
+ * <br>
+ * The list is "huge": it starts in the segment of first_reloc_sel and runs on through
+ * the following selectors as long as each segment is a full 64k piece directly followed
+ * by the next one in the image. Groups may straddle these segment boundaries.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class BwRelocationTable {
+	/**
+	 * Size of the pieces a huge segment is split into
+	 */
+	public final static int HUGE_PIECE_SIZE = 0x10000;
+	
+	public int[] entries = new int[0];
+	
+	public int getCount() {
+		return entries.length;
+	}
+	
+	public int getSelector(int i) {
+		return entries[i] >>> 16;
+	}
+	
+	public int getOffset(int i) {
+		return entries[i] & 0xffff;
+	}
+	
+	/**
+	 * Reads the relocation list of a BW image, one read per segment of the huge list.<br>
+	 * <br>
+	 * An image without first_reloc_sel has no relocations.
+	 * 
+	 * @throws InvalidHeaderException if a segment of the list is not within the image
+	 * or its data does not fit the assumed layout
+	 */
+	public static BwRelocationTable fromStream(BinaryInput input, BwHeader header, BwDescriptorTable descriptors) throws IOException, InvalidHeaderException {
+		var table = new BwRelocationTable();
+		if (header.first_reloc_sel == 0) {
+			return table;
+		}
+		var segment = descriptors.indexOf(header.first_reloc_sel & 0xffff);
+		if (segment < 0) {
+			throw new InvalidHeaderException();
+		}
+		var b = readSegment(input, header, descriptors, segment);
+		var bb = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+		var entries = new int[0x100];
+		var count = 0;
+		var position = 0;
+		while (true) {
+			if (position + 2 > b.length) {
+				if (!continues(descriptors, segment)) {
+					break;
+				}
+				b = append(b, readSegment(input, header, descriptors, ++segment));
+				bb = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+				continue;
+			}
+			var n = bb.getShort(position) & 0xffff;
+			if (n == 0) {
+				break;
+			}
+			if (position + 4 + 2L * n > b.length) {
+				// the group goes on in the next piece of the list
+				if (!continues(descriptors, segment)) {
+					throw new InvalidHeaderException();
+				}
+				b = append(b, readSegment(input, header, descriptors, ++segment));
+				bb = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+				continue;
+			}
+			var selector = bb.getShort(position + 2) & 0xffff;
+			var target = descriptors.indexOf(selector);
+			if (target < 0) {
+				throw new InvalidHeaderException();
+			}
+			position += 4;
+			if (count + n > entries.length) {
+				entries = Arrays.copyOf(entries, Math.max(count + n, entries.length * 2));
+			}
+			for (int i = 0; i < n; i++, position += 2) {
+				var offset = bb.getShort(position) & 0xffff;
+				// the patched word must lie within its segment
+				if (offset + 2 > descriptors.getSize(target)) {
+					throw new InvalidHeaderException();
+				}
+				entries[count++] = selector << 16 | offset;
+			}
+		}
+		table.entries = Arrays.copyOf(entries, count);
+		return table;
+	}
+	
+	/**
+	 * Whether the huge list goes on after segment i: it is a full piece and the
+	 * next descriptor continues right behind it
+	 */
+	private static boolean continues(BwDescriptorTable descriptors, int i) {
+		return i + 1 < descriptors.getCount()
+			&& descriptors.getSize(i) == HUGE_PIECE_SIZE
+			&& (descriptors.base[i + 1] & 0xffffffffL) == (descriptors.base[i] & 0xffffffffL) + HUGE_PIECE_SIZE;
+	}
+	
+	private static byte[] readSegment(BinaryInput input, BwHeader header, BwDescriptorTable descriptors, int i) throws IOException, InvalidHeaderException {
+		var start = descriptors.getFileOffset(header, i);
+		var size = descriptors.getSize(i);
+		if (!descriptors.fitsImage(header, i) || start + size > input.size() || size > Integer.MAX_VALUE) {
+			throw new InvalidHeaderException();
+		}
+		var b = new byte[(int) size];
+		input.readFully(start, b, 0, b.length);
+		return b;
+	}
+	
+	private static byte[] append(byte[] a, byte[] b) {
+		var c = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
+}
@@ -0,0 +1,59 @@
+package yetmorecode.file.format.dos16m;
+
+import java.util.Arrays;
+
+/**
+ * Resolves the relocations of a DOS/16M image to program image offsets<br>
+ * <br>
+ * The DOS/16M counterpart of {@link yetmorecode.file.format.mz.MzRelocator}:
+ * relocations are resolved once (selector:offset to program image offset through
+ * the GDT image) into a sorted array.<br>
+ * <br>
+ * Targets are descriptor base + offset, which assumes GDT image bases are relative to
+ * the program image (see {@link BwDescriptorTable}). Relocations into segments that do
+ * not fit the image under that assumption are counted as unresolved.<br>
+ * Both this and the relocation list layout ({@link BwRelocationTable}) are unverified,
+ * so the targets are not patched into images; there is no rebase yet.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class BwRelocator {
+	/**
+	 * Program image offsets of the patched words, sorted ascending
+	 */
+	private final int[] targets;
+	
+	/**
+	 * Number of relocations whose selector is not in the GDT image or whose segment does not fit the image
+	 */
+	private final int unresolved;
+	
+	public BwRelocator(BwHeader header, BwDescriptorTable descriptors, BwRelocationTable relocations) {
+		var resolved = new int[relocations.getCount()];
+		var count = 0;
+		for (int i = 0; i < resolved.length; i++) {
+			var index = descriptors.indexOf(relocations.getSelector(i));
+			if (index >= 0 && descriptors.fitsImage(header, index)) {
+				resolved[count++] = descriptors.base[index] + relocations.getOffset(i);
+			}
+		}
+		unresolved = resolved.length - count;
+		targets = Arrays.copyOf(resolved, count);
+		Arrays.sort(targets);
+	}
+	
+	public int getCount() {
+		return targets.length;
+	}
+	
+	public int getUnresolvedCount() {
+		return unresolved;
+	}
+	
+	/**
+	 * Program image offset of the word patched by relocation i (in ascending order)
+	 */
+	public int getTarget(int i) {
+		return targets[i];
+	}
+}
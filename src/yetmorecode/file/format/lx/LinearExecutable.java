@@ -1,11 +1,45 @@
 package yetmorecode.file.format.lx;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+import yetmorecode.file.BinaryInput;
+import yetmorecode.file.exception.InvalidHeaderException;
 import yetmorecode.file.format.mz.MzHeader;
 
+/**
+ * LX/LE/LC executable module<br>
+ * <br>
+ * {@link #fromStream(BinaryInput, long)} loads the header and the object, page and fixup
+ * tables, each with a single read. The page data itself is not read.
+ * 
+ * @author https://github.com/yetmorecode
+ */
 public class LinearExecutable {
+	/**
+	 * File offset of the module (of the DOS header if there is one).<br>
+	 * Data pages, iterated pages, the non-resident name table and the debug info
+	 * are relative to it.
+	 */
+	public long offset;
+	
+	/**
+	 * File offset of the LX/LE/LC header, the other tables are relative to it
+	 */
+	public long headerOffset;
+	
+	/**
+	 * Key of this module in a {@link LinearPageCache}, shared by all its page accessors
+	 */
+	final int cacheId = LinearPageCache.nextModule();
+	
 	/**
 	 * Old-style MS-DOS header (optional)
 	 */
@@ -19,12 +53,12 @@ public class LinearExecutable {
 	/**
 	 * Object table
 	 */
-	public ArrayList<LinearObjectTableEntry> objects = new ArrayList<>();
+	public LinearObjectTable objectTable = new LinearObjectTable(0);
 	
 	/**
 	 * The object page table (mapping page numbers to file offsets)
 	 */
-	public ArrayList<LinearPageTableEntry> pageRecords = new ArrayList<>();
+	public LinearPageTable pageTable = new LinearPageTable(0, false);
 	
 	/**
 	 * The fixup page table
@@ -34,12 +68,263 @@ public class LinearExecutable {
 	/**
 	 * The fixup record table
 	 */
-    public HashMap<Integer, ArrayList<LinearFixupRecord>> fixups = new HashMap<>();
-    
-    public int fixupCount;
+	public LinearFixupTable fixups = new LinearFixupTable(0, 0);
 	
 	/**
-	 * The actual data pages
+	 * Number of fixups, source lists counted by their source offsets
+	 */
+	public int fixupCount;
+	
+	/**
+	 * The actual data pages<br>
+	 * <br>
+	 * Not filled by {@link #fromStream(BinaryInput, long)}, use {@link #openPages(BinaryInput, LinearPageCache)}
+	 * to read pages on demand instead.
 	 */
 	public ArrayList<byte[]> pages = new ArrayList<>();
+	
+	/**
+	 * Loads the module at the given offset, which may either start with a DOS header
+	 * pointing to the linear header, or with the linear header itself.
+	 * 
+	 * @throws InvalidHeaderException if there is no LE, LX or LC signature
+	 */
+	public static LinearExecutable fromStream(BinaryInput input, long offset) throws IOException, InvalidHeaderException {
+		var exe = readHeaders(input, offset);
+		exe.readObjectTable(input, exe.headerOffset);
+		exe.readPageTable(input, exe.headerOffset);
+		exe.readFixupPageTable(input, exe.headerOffset);
+		exe.readFixupRecords(input, exe.headerOffset);
+		return exe;
+	}
+	
+	/**
+	 * Loads the module at the given offset, reading the independent tables concurrently
+	 * (see {@link #readTables(BinaryInput, long, Executor)}).<br>
+	 * <br>
+	 * If the executor is a {@link ForkJoinPool}, the fixup records are decoded on it as well
+	 * (see {@link #readFixupRecords(BinaryInput, long, ForkJoinPool)}).
+	 */
+	public static LinearExecutable fromStream(BinaryInput input, long offset, Executor executor) throws IOException, InvalidHeaderException {
+		var exe = readHeaders(input, offset);
+		exe.readTables(input, exe.headerOffset, executor);
+		if (executor instanceof ForkJoinPool) {
+			exe.readFixupRecords(input, exe.headerOffset, (ForkJoinPool) executor);
+		} else {
+			exe.readFixupRecords(input, exe.headerOffset);
+		}
+		return exe;
+	}
+	
+	private static LinearExecutable readHeaders(BinaryInput input, long offset) throws IOException, InvalidHeaderException {
+		var exe = new LinearExecutable();
+		exe.offset = offset;
+		exe.headerOffset = offset;
+		var signature = input.bulk(offset, 2).order(ByteOrder.LITTLE_ENDIAN).getShort(0);
+		if (signature == MzHeader.SIGNATURE_DOS) {
+			exe.dosHeader = MzHeader.fromStream(input, offset);
+			exe.headerOffset = offset + (exe.dosHeader.fileAddressNewExe & 0xffffffffL);
+		}
+		exe.header = LinearHeader.fromStream(input, exe.headerOffset);
+		if (!exe.header.isLe() && !exe.header.isLx() && !exe.header.isLc()) {
+			throw new InvalidHeaderException();
+		}
+		return exe;
+	}
+	
+	/**
+	 * Lazy access to the logical pages, cached in the given (possibly shared) cache.<br>
+	 * <br>
+	 * All accessors of this module share its cached pages, so opening it again
+	 * does not cache its pages twice.
+	 */
+	public LinearPageAccessor openPages(BinaryInput input, LinearPageCache cache) {
+		return new LinearPageAccessor(this, input, cache);
+	}
+	
+	/**
+	 * Object table entries, created on access (see {@link LinearObjectTable#asList()})
+	 */
+	public List<LinearObjectTableEntry> getObjects() {
+		return objectTable.asList();
+	}
+	
+	/**
+	 * Object page table entries, created on access (see {@link LinearPageTable#asList()})
+	 */
+	public List<LinearPageTableEntry> getPageRecords() {
+		return pageTable.asList();
+	}
+	
+	/**
+	 * Absolute file offset of the data of a page
+	 * 
+	 * @param page page index, starting at 1
+	 */
+	public long getPageFileOffset(int page) {
+		var dataOffset = pageTable.offset[page - 1];
+		if (header.isLe()) {
+			// the page number counts pages in the data pages section
+			return offset + (header.dataPagesOffset & 0xffffffffL) + (long) (dataOffset - 1) * header.pageSize;
+		}
+		var base = header.dataPagesOffset;
+		if (pageTable.flags[page - 1] == LinearPageTableEntry.FLAG_ITERATED && header.iterPagesOffset != 0) {
+			base = header.iterPagesOffset;
+		}
+		return offset + (base & 0xffffffffL) + ((dataOffset & 0xffffffffL) << header.pageOffsetShift);
+	}
+	
+	/**
+	 * Reads the object, object page and fixup page tables concurrently.<br>
+	 * <br>
+	 * The tables are independent of each other and only positional reads are used,
+	 * so a single open input can be shared by all workers.
+	 * 
+	 * @param input input positioned anywhere, its position is not used
+	 * @param headerOffset file offset of the LX/LE/LC header
+	 * @param executor executor running the table readers
+	 * @throws InvalidHeaderException if a table does not fit into the file
+	 */
+	public void readTables(BinaryInput input, long headerOffset, Executor executor) throws IOException, InvalidHeaderException {
+		var objectTask = runAsync(() -> readObjectTable(input, headerOffset), executor);
+		var pageTask = runAsync(() -> readPageTable(input, headerOffset), executor);
+		var fixupTask = runAsync(() -> readFixupPageTable(input, headerOffset), executor);
+		try {
+			CompletableFuture.allOf(objectTask, pageTask, fixupTask).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			}
+			if (e.getCause() instanceof InvalidHeaderException) {
+				throw (InvalidHeaderException) e.getCause();
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Reads the object table into {@link #objectTable}
+	 * 
+	 * @throws InvalidHeaderException if the table does not fit into the file
+	 */
+	public void readObjectTable(BinaryInput input, long headerOffset) throws IOException, InvalidHeaderException {
+		var b = readTable(input, headerOffset + (header.objectTableOffset & 0xffffffffL), header.objectCount, LinearObjectTableEntry.SIZE);
+		objectTable = LinearObjectTable.fromBytes(b, header.objectCount, header.getDecoder());
+	}
+	
+	/**
+	 * Reads the object page table into {@link #pageTable}
+	 * 
+	 * @throws InvalidHeaderException if the table does not fit into the file
+	 */
+	public void readPageTable(BinaryInput input, long headerOffset) throws IOException, InvalidHeaderException {
+		var entrySize = header.isLe() ? LePageTableEntry.SIZE : LxPageTableEntry.SIZE;
+		var b = readTable(input, headerOffset + (header.pageTableOffset & 0xffffffffL), header.pageCount, entrySize);
+		pageTable = LinearPageTable.fromBytes(b, header);
+	}
+	
+	/**
+	 * Reads the fixup page table into {@link #fixupTable}.<br>
+	 * <br>
+	 * The table has one more entry than there are pages, the last one marking
+	 * the end of the fixup record table.
+	 * 
+	 * @throws InvalidHeaderException if the table does not fit into the file
+	 */
+	public void readFixupPageTable(BinaryInput input, long headerOffset) throws IOException, InvalidHeaderException {
+		if (header.pageCount < 0) {
+			throw new InvalidHeaderException();
+		}
+		var count = header.pageCount + 1;
+		var d = header.getDecoder();
+		var b = readTable(input, headerOffset + (header.fixupPageTableOffset & 0xffffffffL), count, 4);
+		var table = new long[count];
+		for (int i = 0; i < count; i++) {
+			table[i] = d.getUnsignedInt(b, i * 4);
+		}
+		fixupTable = table;
+	}
+	
+	/**
+	 * Reads the fixup record table with a single read and decodes it into {@link #fixups}.<br>
+	 * <br>
+	 * Requires {@link #fixupTable}.
+	 * 
+	 * @throws InvalidHeaderException if the fixup page table or a record is malformed
+	 */
+	public void readFixupRecords(BinaryInput input, long headerOffset) throws IOException, InvalidHeaderException {
+		var start = fixupTable[0];
+		var end = fixupTable[header.pageCount];
+		if (end < start || end - start > Integer.MAX_VALUE) {
+			throw new InvalidHeaderException();
+		}
+		var b = readTable(input, headerOffset + (header.fixupRecordTableOffset & 0xffffffffL) + start, end - start, 1);
+		try {
+			fixups = LinearFixupTable.decode(b, fixupTable, header.pageCount, header.getDecoder());
+		} catch (IndexOutOfBoundsException e) {
+			throw new InvalidHeaderException();
+		}
+		fixupCount = fixups.getCount();
+	}
+	
+	/**
+	 * Decodes the fixup record table into {@link #fixups}, splitting the pages across
+	 * the workers of a fork/join pool.<br>
+	 * <br>
+	 * The fixup page table gives the byte range of every page, so page ranges are decoded
+	 * independently, each with its own positional read, and merged in page order.
+	 * Requires {@link #fixupTable}.
+	 * 
+	 * @throws InvalidHeaderException if the fixup page table or a record is malformed
+	 */
+	public void readFixupRecords(BinaryInput input, long headerOffset, ForkJoinPool pool) throws IOException, InvalidHeaderException {
+		// the ranges are only independent if the table is ascending
+		for (int i = 0; i < header.pageCount; i++) {
+			if (fixupTable[i + 1] < fixupTable[i] || fixupTable[i + 1] - fixupTable[i] > Integer.MAX_VALUE) {
+				throw new InvalidHeaderException();
+			}
+		}
+		var recordTableOffset = headerOffset + (header.fixupRecordTableOffset & 0xffffffffL);
+		if (recordTableOffset + fixupTable[header.pageCount] > input.size()) {
+			throw new InvalidHeaderException();
+		}
+		try {
+			fixups = LinearFixupTable.decode(input, recordTableOffset,
+				fixupTable, header.pageCount, header.getDecoder(), pool);
+		} catch (IndexOutOfBoundsException e) {
+			throw new InvalidHeaderException();
+		}
+		fixupCount = fixups.getCount();
+	}
+	
+	/**
+	 * Reads a table of count entries with a single read
+	 * 
+	 * @throws InvalidHeaderException if the table does not fit into the file
+	 */
+	private static byte[] readTable(BinaryInput input, long offset, long count, int entrySize) throws IOException, InvalidHeaderException {
+		var size = count * entrySize;
+		if (count < 0 || offset < 0 || offset > input.size() || size > input.size() - offset || size > Integer.MAX_VALUE) {
+			throw new InvalidHeaderException();
+		}
+		var b = new byte[(int) size];
+		input.readFully(offset, b, 0, b.length);
+		return b;
+	}
+	
+	private static CompletableFuture<Void> runAsync(TableReader reader, Executor executor) {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				reader.read();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (InvalidHeaderException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+	
+	private interface TableReader {
+		void read() throws IOException, InvalidHeaderException;
+	}
 }
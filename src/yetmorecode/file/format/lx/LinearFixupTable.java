@@ -0,0 +1,480 @@
+package yetmorecode.file.format.lx;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import yetmorecode.file.BinaryInput;
+import yetmorecode.file.ByteDecoder;
+
+/**
+ * Fixup record table, decoded into parallel primitive columns<br>
+ * <br>
+ * Every row is a single fixup: records with a source list are expanded into one row
+ * per source offset (with {@link LinearFixupRecord#SOURCE_SOURCE_LIST} cleared).
+ * The rows of page p (starting at 1) are pageStart[p - 1] .. pageStart[p] - 1, in
+ * file order.<br>
+ * <br>
+ * The target columns are shared by the target types:
+ * <pre>
+ * target type     objectNumber     targetOffset
+ * internal        object number    target offset (0 for selector fixups)
+ * import ordinal  module index     ordinal number
+ * import name     module index     procedure name table offset
+ * entry           -                entry table ordinal
+ * </pre>
+ * Iterate with a {@link Cursor}, or materialize single rows with {@link #getRecord(int)}.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class LinearFixupTable {
+	/**
+	 * Number of record bytes a parallel decode hands to a single task
+	 */
+	public final static int PARALLEL_CHUNK_SIZE = 0x8000;
+	
+	/**
+	 * First row of each page, with one more entry marking the end of the table
+	 */
+	public int[] pageStart;
+	
+	public byte[] sourceType;
+	
+	public byte[] targetFlags;
+	
+	public short[] sourceOffset;
+	
+	public short[] objectNumber;
+	
+	public int[] targetOffset;
+	
+	public int[] additive;
+	
+	private int count;
+	
+	public LinearFixupTable(int pageCount, int capacity) {
+		pageStart = new int[pageCount + 1];
+		sourceType = new byte[capacity];
+		targetFlags = new byte[capacity];
+		sourceOffset = new short[capacity];
+		objectNumber = new short[capacity];
+		targetOffset = new int[capacity];
+		additive = new int[capacity];
+	}
+	
+	/**
+	 * Number of rows
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	public int getPageCount() {
+		return pageStart.length - 1;
+	}
+	
+	/**
+	 * Number of rows of a page
+	 * 
+	 * @param page page index, starting at 1
+	 */
+	public int getCount(int page) {
+		return pageStart[page] - pageStart[page - 1];
+	}
+	
+	/**
+	 * Cursor over the rows of a page
+	 * 
+	 * @param page page index, starting at 1
+	 */
+	public Cursor cursor(int page) {
+		return new Cursor().reset(page);
+	}
+	
+	/**
+	 * Cursor over all rows
+	 */
+	public Cursor cursor() {
+		return new Cursor().reset(0, count);
+	}
+	
+	/**
+	 * Row i as a record object (with an empty source list)
+	 */
+	public LinearFixupRecord getRecord(int row) {
+		var record = new LinearFixupRecord();
+		record.sourceType = sourceType[row];
+		record.targetFlags = targetFlags[row];
+		record.sourceOffset = sourceOffset[row];
+		record.additive = additive[row];
+		switch (targetFlags[row] & LinearFixupRecord.TARGET_TYPE_MASK) {
+		case LinearFixupRecord.TARGET_INTERNAL_REF:
+			record.objectNumber = objectNumber[row];
+			record.targetOffset = targetOffset[row];
+			break;
+		case LinearFixupRecord.TARGET_IMPORT_ORDINAL:
+			record.ordinalIndex = objectNumber[row];
+			record.ordinalNumber = targetOffset[row];
+			break;
+		case LinearFixupRecord.TARGET_IMPORT_NAME:
+			record.ordinalIndex = objectNumber[row];
+			record.procedureNameTableOffset = targetOffset[row];
+			break;
+		case LinearFixupRecord.TARGET_IMPORT_ENTRY:
+			record.ordinalNumber = targetOffset[row];
+			break;
+		}
+		return record;
+	}
+	
+	/**
+	 * Decodes the fixup records of all pages
+	 * 
+	 * @param b the fixup record table
+	 * @param fixupTable the fixup page table (offsets into b)
+	 * @param pageCount number of pages
+	 * @throws IndexOutOfBoundsException if a record exceeds b
+	 */
+	static LinearFixupTable decode(byte[] b, long[] fixupTable, int pageCount, ByteDecoder d) {
+		return decode(b, fixupTable, 0, pageCount, d);
+	}
+	
+	/**
+	 * Decodes the fixup records of the pages from .. to - 1 (starting at 0)
+	 * 
+	 * @param b the fixup records of these pages, starting at fixupTable[from]
+	 * @throws IndexOutOfBoundsException if a record exceeds b
+	 */
+	static LinearFixupTable decode(byte[] b, long[] fixupTable, int from, int to, ByteDecoder d) {
+		// internal 16-bit offset fixups, the most common records, take 7 bytes
+		var table = new LinearFixupTable(to - from, Math.max(16, b.length / 7));
+		var start = fixupTable[from];
+		for (int i = from; i < to; i++) {
+			table.pageStart[i - from] = table.count;
+			var position = (int) (fixupTable[i] - start);
+			var end = (int) (fixupTable[i + 1] - start);
+			while (position < end) {
+				position = table.decodeRecord(b, position, d);
+			}
+		}
+		table.pageStart[to - from] = table.count;
+		table.trim();
+		return table;
+	}
+	
+	/**
+	 * Decodes the fixup records of all pages on a fork/join pool<br>
+	 * <br>
+	 * The pages are split into ranges of about {@link #PARALLEL_CHUNK_SIZE} record bytes.
+	 * Each range is read with its own positional read and decoded into a partial table,
+	 * the partial tables are then concatenated in page order.
+	 * 
+	 * @param offset file offset of the fixup record table
+	 * @param fixupTable the fixup page table, which must be ascending
+	 * @throws IndexOutOfBoundsException if a record exceeds its page range
+	 */
+	static LinearFixupTable decode(BinaryInput input, long offset, long[] fixupTable, int pageCount, ByteDecoder d, ForkJoinPool pool) throws IOException {
+		var bounds = split(fixupTable, pageCount);
+		var parts = new LinearFixupTable[bounds.length - 1];
+		try {
+			pool.invoke(new DecodeTask(input, offset, fixupTable, d, bounds, parts, 0, parts.length));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return concat(parts, pageCount);
+	}
+	
+	/**
+	 * First page of every range, followed by pageCount
+	 */
+	private static int[] split(long[] fixupTable, int pageCount) {
+		var bounds = new int[16];
+		var count = 1;
+		for (int i = 1; i < pageCount; i++) {
+			if (fixupTable[i] - fixupTable[bounds[count - 1]] >= PARALLEL_CHUNK_SIZE) {
+				if (count == bounds.length) {
+					bounds = Arrays.copyOf(bounds, count * 2);
+				}
+				bounds[count++] = i;
+			}
+		}
+		bounds = Arrays.copyOf(bounds, count + 1);
+		bounds[count] = pageCount;
+		return bounds;
+	}
+	
+	private static LinearFixupTable concat(LinearFixupTable[] parts, int pageCount) {
+		var total = 0;
+		for (var part : parts) {
+			total += part.count;
+		}
+		var table = new LinearFixupTable(pageCount, total);
+		var page = 0;
+		for (var part : parts) {
+			var n = part.count;
+			for (int i = 0; i < part.getPageCount(); i++) {
+				table.pageStart[page++] = table.count + part.pageStart[i];
+			}
+			System.arraycopy(part.sourceType, 0, table.sourceType, table.count, n);
+			System.arraycopy(part.targetFlags, 0, table.targetFlags, table.count, n);
+			System.arraycopy(part.sourceOffset, 0, table.sourceOffset, table.count, n);
+			System.arraycopy(part.objectNumber, 0, table.objectNumber, table.count, n);
+			System.arraycopy(part.targetOffset, 0, table.targetOffset, table.count, n);
+			System.arraycopy(part.additive, 0, table.additive, table.count, n);
+			table.count += n;
+		}
+		table.pageStart[pageCount] = table.count;
+		return table;
+	}
+	
+	/**
+	 * Decodes the record at position, appending its rows
+	 * 
+	 * @return position of the next record
+	 */
+	int decodeRecord(byte[] b, int position, ByteDecoder d) {
+		var type = b[position];
+		var flags = b[position + 1];
+		position += 2;
+		var list = (type & LinearFixupRecord.SOURCE_SOURCE_LIST) != 0;
+		int source;
+		if (list) {
+			// number of source offsets following the target data
+			source = b[position++] & 0xff;
+		} else {
+			source = d.getShort(b, position);
+			position += 2;
+		}
+		var wideObject = (flags & LinearFixupRecord.TARGET_16BIT_OBJECT) != 0;
+		var wideOffset = (flags & LinearFixupRecord.TARGET_32BIT_OFFSET) != 0;
+		short object = 0;
+		var target = 0;
+		switch (flags & LinearFixupRecord.TARGET_TYPE_MASK) {
+		case LinearFixupRecord.TARGET_INTERNAL_REF:
+		case LinearFixupRecord.TARGET_IMPORT_ORDINAL:
+		case LinearFixupRecord.TARGET_IMPORT_NAME:
+			if (wideObject) {
+				object = d.getShort(b, position);
+				position += 2;
+			} else {
+				object = (short) (b[position++] & 0xff);
+			}
+			if ((flags & LinearFixupRecord.TARGET_TYPE_MASK) == LinearFixupRecord.TARGET_INTERNAL_REF
+				&& (type & LinearFixupRecord.SOURCE_MASK) == LinearFixupRecord.SOURCE_16BIT_SELECTOR_FIXUP) {
+				// selector fixups have no target offset
+				break;
+			}
+			if ((flags & LinearFixupRecord.TARGET_TYPE_MASK) == LinearFixupRecord.TARGET_IMPORT_ORDINAL
+				&& (flags & LinearFixupRecord.TARGET_8BIT_ORDINAL) != 0) {
+				target = b[position++] & 0xff;
+			} else if (wideOffset) {
+				target = d.getInt(b, position);
+				position += 4;
+			} else {
+				target = d.getUnsignedShort(b, position);
+				position += 2;
+			}
+			break;
+		case LinearFixupRecord.TARGET_IMPORT_ENTRY:
+			// ordinal index into the entry table
+			if (wideObject) {
+				target = d.getUnsignedShort(b, position);
+				position += 2;
+			} else {
+				target = b[position++] & 0xff;
+			}
+			break;
+		}
+		var add = 0;
+		if ((flags & LinearFixupRecord.TARGET_ADDITIVE_FIXUP) != 0) {
+			if ((flags & LinearFixupRecord.TARGET_32BIT_ADDITIVE) != 0) {
+				add = d.getInt(b, position);
+				position += 4;
+			} else {
+				add = d.getUnsignedShort(b, position);
+				position += 2;
+			}
+		}
+		if (!list) {
+			append(type, flags, (short) source, object, target, add);
+			return position;
+		}
+		type &= ~LinearFixupRecord.SOURCE_SOURCE_LIST;
+		for (int i = 0; i < source; i++) {
+			append(type, flags, d.getShort(b, position), object, target, add);
+			position += 2;
+		}
+		return position;
+	}
+	
+	private void append(byte type, byte flags, short source, short object, int target, int add) {
+		if (count == sourceType.length) {
+			grow(count * 2);
+		}
+		sourceType[count] = type;
+		targetFlags[count] = flags;
+		sourceOffset[count] = source;
+		objectNumber[count] = object;
+		targetOffset[count] = target;
+		additive[count] = add;
+		count++;
+	}
+	
+	/**
+	 * Shrinks the columns to the number of rows
+	 */
+	private void trim() {
+		if (count < sourceType.length) {
+			grow(count);
+		}
+	}
+	
+	private void grow(int capacity) {
+		sourceType = Arrays.copyOf(sourceType, capacity);
+		targetFlags = Arrays.copyOf(targetFlags, capacity);
+		sourceOffset = Arrays.copyOf(sourceOffset, capacity);
+		objectNumber = Arrays.copyOf(objectNumber, capacity);
+		targetOffset = Arrays.copyOf(targetOffset, capacity);
+		additive = Arrays.copyOf(additive, capacity);
+	}
+	
+	/**
+	 * Decodes the page ranges from .. to - 1, splitting until a single range is left
+	 */
+	private static class DecodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final BinaryInput input;
+		private final long offset;
+		private final long[] fixupTable;
+		private final ByteDecoder decoder;
+		private final int[] bounds;
+		private final LinearFixupTable[] parts;
+		private final int from;
+		private final int to;
+		
+		DecodeTask(BinaryInput input, long offset, long[] fixupTable, ByteDecoder decoder, int[] bounds, LinearFixupTable[] parts, int from, int to) {
+			this.input = input;
+			this.offset = offset;
+			this.fixupTable = fixupTable;
+			this.decoder = decoder;
+			this.bounds = bounds;
+			this.parts = parts;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				var middle = (from + to) >>> 1;
+				invokeAll(
+					new DecodeTask(input, offset, fixupTable, decoder, bounds, parts, from, middle),
+					new DecodeTask(input, offset, fixupTable, decoder, bounds, parts, middle, to)
+				);
+				return;
+			}
+			var first = bounds[from];
+			var last = bounds[from + 1];
+			var b = new byte[(int) (fixupTable[last] - fixupTable[first])];
+			try {
+				input.readFully(offset + fixupTable[first], b, 0, b.length);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			parts[from] = decode(b, fixupTable, first, last, decoder);
+		}
+	}
+	
+	/**
+	 * Reusable position over a range of rows<br>
+	 * <br>
+	 * Call {@link #next()} before reading the first row.
+	 */
+	public class Cursor {
+		private int row;
+		
+		private int end;
+		
+		/**
+		 * Moves the cursor before the first row of a page
+		 * 
+		 * @param page page index, starting at 1
+		 */
+		public Cursor reset(int page) {
+			return reset(pageStart[page - 1], pageStart[page]);
+		}
+		
+		/**
+		 * Moves the cursor before row from, ending before row to
+		 */
+		public Cursor reset(int from, int to) {
+			row = from - 1;
+			end = to;
+			return this;
+		}
+		
+		/**
+		 * Advances to the next row
+		 * 
+		 * @return false if there are no more rows
+		 */
+		public boolean next() {
+			if (row + 1 >= end) {
+				row = end;
+				return false;
+			}
+			row++;
+			return true;
+		}
+		
+		/**
+		 * Current row index
+		 */
+		public int getRow() {
+			return row;
+		}
+		
+		/**
+		 * Source type without the flag bits
+		 */
+		public int getSourceType() {
+			return sourceType[row] & LinearFixupRecord.SOURCE_MASK;
+		}
+		
+		public byte getTargetFlags() {
+			return targetFlags[row];
+		}
+		
+		public int getTargetType() {
+			return targetFlags[row] & LinearFixupRecord.TARGET_TYPE_MASK;
+		}
+		
+		/**
+		 * Offset of the fixup within its page, may be negative for fixups crossing the page start
+		 */
+		public short getSourceOffset() {
+			return sourceOffset[row];
+		}
+		
+		/**
+		 * Target object number (internal) or module ordinal index (imports)
+		 */
+		public int getObjectNumber() {
+			return objectNumber[row] & 0xffff;
+		}
+		
+		/**
+		 * Target offset (internal), ordinal number or procedure name table offset (imports)
+		 */
+		public int getTargetOffset() {
+			return targetOffset[row];
+		}
+		
+		public int getAdditive() {
+			return additive[row];
+		}
+	}
+}
@@ -1,5 +1,15 @@
 package yetmorecode.file.format.lx;
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.concurrent.CompletableFuture;
+
+import yetmorecode.file.AsyncBinaryFile;
+import yetmorecode.file.BinaryInput;
+import yetmorecode.file.ByteDecoder;
+import yetmorecode.file.exception.InvalidHeaderException;
+import yetmorecode.file.format.mz.MzHeader;
+
 /**
  * LX/LE/LC executable module header
  * 
@@ -168,6 +178,13 @@ package yetmorecode.file.format.lx;
 public class LinearHeader {
 	public final static int SIZE = 0xb0;
 	
+	/**
+	 * Size of a VxD (Windows 386 enhanced mode driver) LE header, including
+	 * winresoff, winreslen and the Dev386 fields.<br>
+	 * The tail is only decoded for LE modules whose object table starts after it.
+	 */
+	public final static int VXD_SIZE = 0xc4;
+	
 	/**
 	 * Signature for LX executables
 	 */
@@ -254,6 +271,36 @@ public class LinearHeader {
 	 */
 	public final static short CPU_80486 = 0x3;
 	
+	/**
+	 * 04H - Pentium (80586) or upwardly compatible CPU is required to execute this module.
+	 */
+	public final static short CPU_PENTIUM = 0x4;
+	
+	/**
+	 * 20H - Intel i860 (N10) or compatible CPU is required to execute this module.
+	 */
+	public final static short CPU_I860_N10 = 0x20;
+	
+	/**
+	 * 21H - Intel "N11" or compatible CPU is required to execute this module.
+	 */
+	public final static short CPU_I860_N11 = 0x21;
+	
+	/**
+	 * 40H - MIPS Mark I (R2000, R3000) or compatible CPU is required to execute this module.
+	 */
+	public final static short CPU_MIPS_I = 0x40;
+	
+	/**
+	 * 41H - MIPS Mark II (R6000) or compatible CPU is required to execute this module.
+	 */
+	public final static short CPU_MIPS_II = 0x41;
+	
+	/**
+	 * 42H - MIPS Mark III (R4000) or compatible CPU is required to execute this module.
+	 */
+	public final static short CPU_MIPS_III = 0x42;
+	
 	/**
 	 * CPU Type = DW Module CPU Type.
 	 * 
@@ -261,9 +308,35 @@ public class LinearHeader {
 	 * 01H - 80286 or upwardly compatible CPU is required to execute this module.
 	 * 02H - 80386 or upwardly compatible CPU is required to execute this module.
 	 * 03H - 80486 or upwardly compatible CPU is required to execute this module. 
+	 * 04H - Pentium or upwardly compatible CPU is required to execute this module.
+	 * 20H - Intel i860 (N10) or compatible CPU is required to execute this module.
+	 * 21H - Intel "N11" or compatible CPU is required to execute this module.
+	 * 40H - MIPS Mark I (R2000, R3000) or compatible CPU is required to execute this module.
+	 * 41H - MIPS Mark II (R6000) or compatible CPU is required to execute this module.
+	 * 42H - MIPS Mark III (R4000) or compatible CPU is required to execute this module.
 	 */
 	public short cpuType;
 	
+	/**
+	 * Whether cpu is one of the documented CPU types
+	 */
+	public static boolean isKnownCpu(int cpu) {
+		switch (cpu) {
+		case CPU_80286:
+		case CPU_80386:
+		case CPU_80486:
+		case CPU_PENTIUM:
+		case CPU_I860_N10:
+		case CPU_I860_N11:
+		case CPU_MIPS_I:
+		case CPU_MIPS_II:
+		case CPU_MIPS_III:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
 	/**
 	 * 00H - Unknown (any new-format OS)
 	 */
@@ -699,7 +772,10 @@ public class LinearHeader {
 	 */
 	public int stackSize;
 	
-	public byte[] res3;
+	/**
+	 * Reserved bytes of the VxD header (winnt.h e32_res3, overlapping STACKSIZE)
+	 */
+	public byte[] res3 = new byte[12];
     /* Pad structure to 192 bytes */
 	public long winresoff ;
 	public long winreslen ;
@@ -711,6 +787,124 @@ public class LinearHeader {
 
 	public LinearHeader() {}
 	
+	/**
+	 * Reads a LX/LE/LC header asynchronously.<br>
+	 * <br>
+	 * Like {@link #fromStream(BinaryInput, long)} the read includes the VxD tail,
+	 * as far as the file goes.
+	 */
+	public static CompletableFuture<LinearHeader> fromAsync(AsyncBinaryFile file, long offset) {
+		int size;
+		try {
+			size = (int) Math.max(SIZE, Math.min(VXD_SIZE, file.size() - offset));
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		return file.parse(offset, size, LinearHeader::fromStream);
+	}
+	
+	/**
+	 * Locates and reads the LX/LE/LC header of a file asynchronously.<br>
+	 * <br>
+	 * If the file starts with a DOS 2 compatible header, the linear header is read
+	 * from the offset at 3Ch once the MZ header arrived, otherwise from the start of the file.
+	 * The future fails with an {@link InvalidHeaderException} if no valid signature is found.
+	 */
+	public static CompletableFuture<LinearHeader> findAsync(AsyncBinaryFile file) {
+		return MzHeader.fromAsync(file, 0)
+			.thenApply(mz -> mz.signature == MzHeader.SIGNATURE_DOS ? mz.fileAddressNewExe & 0xffffffffL : 0L)
+			.thenCompose(offset -> fromAsync(file, offset))
+			.thenCompose(header -> header.isLe() || header.isLx() || header.isLc()
+				? CompletableFuture.completedFuture(header)
+				: CompletableFuture.failedFuture(new InvalidHeaderException()));
+	}
+	
+	/**
+	 * Decoder for the multi-byte values of this module, as given by B-ORD and W-ORD
+	 */
+	public ByteDecoder getDecoder() {
+		return ByteDecoder.forOrder(
+			byteOrdering == BYTEORDER_BE ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN,
+			wordOrdering == WORDORDER_BE ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN
+		);
+	}
+	
+	/**
+	 * Reads a LX/LE/LC header located at the given file offset.<br>
+	 * <br>
+	 * The header is fetched with a single positional read and decoded from memory,
+	 * so the current position of input is left untouched. The decoder is chosen
+	 * once from the ordering fields, big endian modules decode the same way.
+	 */
+	public static LinearHeader fromStream(BinaryInput input, long offset) throws IOException {
+		// the VxD tail comes with the same read, if the file is long enough
+		var size = (int) Math.max(SIZE, Math.min(VXD_SIZE, input.size() - offset));
+		var bytes = new byte[size];
+		input.readFully(offset, bytes, 0, size);
+		var header = new LinearHeader();
+		// "L" is always the low order byte of the signature
+		header.signature = (short) ((bytes[0] & 0xff) | (bytes[1] & 0xff) << 8);
+		header.byteOrdering = bytes[2];
+		header.wordOrdering = bytes[3];
+		var d = header.getDecoder();
+		header.formatLevel = d.getInt(bytes, 0x04);
+		header.cpuType = d.getShort(bytes, 0x08);
+		header.osType = d.getShort(bytes, 0x0a);
+		header.moduleVersion = d.getInt(bytes, 0x0c);
+		header.moduleFlags = d.getInt(bytes, 0x10);
+		header.pageCount = d.getInt(bytes, 0x14);
+		header.eipObject = d.getInt(bytes, 0x18);
+		header.eip = d.getInt(bytes, 0x1c);
+		header.espObject = d.getInt(bytes, 0x20);
+		header.esp = d.getInt(bytes, 0x24);
+		header.pageSize = d.getInt(bytes, 0x28);
+		if (header.isLe()) {
+			header.lastPageSize = d.getInt(bytes, 0x2c);
+		} else {
+			header.pageOffsetShift = d.getInt(bytes, 0x2c);
+		}
+		header.fixupSectionSize = d.getInt(bytes, 0x30);
+		header.fixupSectionChecksum = d.getInt(bytes, 0x34);
+		header.loaderSectionSize = d.getInt(bytes, 0x38);
+		header.loaderSectionChecksum = d.getInt(bytes, 0x3c);
+		header.objectTableOffset = d.getInt(bytes, 0x40);
+		header.objectCount = d.getInt(bytes, 0x44);
+		header.pageTableOffset = d.getInt(bytes, 0x48);
+		header.iterPagesOffset = d.getInt(bytes, 0x4c);
+		header.resourceTableOffset = d.getInt(bytes, 0x50);
+		header.resourceCount = d.getInt(bytes, 0x54);
+		header.residentNameTableOffset = d.getInt(bytes, 0x58);
+		header.entryTableOffset = d.getInt(bytes, 0x5c);
+		header.directivesTableOffset = d.getInt(bytes, 0x60);
+		header.directivesCount = d.getInt(bytes, 0x64);
+		header.fixupPageTableOffset = d.getInt(bytes, 0x68);
+		header.fixupRecordTableOffset = d.getInt(bytes, 0x6c);
+		header.importModuleNameTableOffset = d.getInt(bytes, 0x70);
+		header.importModuleNameCount = d.getInt(bytes, 0x74);
+		header.importProcedureNameTableOffset = d.getInt(bytes, 0x78);
+		header.checksumTableOffset = d.getInt(bytes, 0x7c);
+		header.dataPagesOffset = d.getInt(bytes, 0x80);
+		header.preloadPagesCount = d.getInt(bytes, 0x84);
+		header.nameTableOffset = d.getInt(bytes, 0x88);
+		header.nameTableLength = d.getInt(bytes, 0x8c);
+		header.nameTableChecksum = d.getInt(bytes, 0x90);
+		header.autoDataSegmentObjectNumber = d.getInt(bytes, 0x94);
+		header.debugOffset = d.getInt(bytes, 0x98);
+		header.debugLength = d.getInt(bytes, 0x9c);
+		header.pagesInPreloadSectionCount = d.getInt(bytes, 0xa0);
+		header.pagesInDemandSectionCount = d.getInt(bytes, 0xa4);
+		header.heapSize = d.getInt(bytes, 0xa8);
+		header.stackSize = d.getInt(bytes, 0xac);
+		if (size >= VXD_SIZE && header.isLe() && header.objectTableOffset >= VXD_SIZE) {
+			System.arraycopy(bytes, 0xac, header.res3, 0, header.res3.length);
+			header.winresoff = d.getUnsignedInt(bytes, 0xb8);
+			header.winreslen = d.getUnsignedInt(bytes, 0xbc);
+			header.Dev386_Device_ID = d.getShort(bytes, 0xc0);
+			header.Dev386_DDK_Version = d.getShort(bytes, 0xc2);
+		}
+		return header;
+	}
+	
 	public boolean isLe() {
 		return signature == SIGNATURE_LE;
 	}
@@ -0,0 +1,128 @@
+package yetmorecode.file.format.lx;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import yetmorecode.file.ByteDecoder;
+
+/**
+ * Object table, decoded into parallel primitive columns<br>
+ * <br>
+ * Row i describes object number i + 1. {@link LinearObjectTableEntry} instances
+ * are only created on demand, see {@link #getEntry(int)} and {@link #asList()}.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class LinearObjectTable {
+	/**
+	 * Virtual sizes
+	 */
+	public int[] size;
+	
+	/**
+	 * Relocation base addresses
+	 */
+	public int[] base;
+	
+	/**
+	 * Object flags, see the {@link LinearObjectTableEntry} FLAG_* constants
+	 */
+	public int[] flags;
+	
+	/**
+	 * Index of the first object page table entry (starting at 1)
+	 */
+	public int[] pageTableIndex;
+	
+	/**
+	 * Number of object page table entries
+	 */
+	public int[] pageCount;
+	
+	/**
+	 * Reserved field, kept so entries round-trip unchanged
+	 */
+	public int[] reserved;
+	
+	public LinearObjectTable(int count) {
+		size = new int[count];
+		base = new int[count];
+		flags = new int[count];
+		pageTableIndex = new int[count];
+		pageCount = new int[count];
+		reserved = new int[count];
+	}
+	
+	public int getCount() {
+		return size.length;
+	}
+	
+	/**
+	 * Row of the object containing a logical page, -1 if no object maps it
+	 * 
+	 * @param page page index, starting at 1
+	 */
+	public int indexOfPage(int page) {
+		for (int i = 0; i < size.length; i++) {
+			if (page >= pageTableIndex[i] && page < pageTableIndex[i] + pageCount[i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Entry object for row i
+	 */
+	public LinearObjectTableEntry getEntry(int index) {
+		return getEntry(index, new LinearObjectTableEntry());
+	}
+	
+	/**
+	 * Fills entry with row i, so one instance can be reused while iterating
+	 */
+	public LinearObjectTableEntry getEntry(int index, LinearObjectTableEntry entry) {
+		entry.number = index + 1;
+		entry.size = size[index];
+		entry.base = base[index];
+		entry.flags = flags[index];
+		entry.pageTableIndex = pageTableIndex[index];
+		entry.pageCount = pageCount[index];
+		entry.reserved = reserved[index];
+		return entry;
+	}
+	
+	/**
+	 * Read-only list view, creating an entry object on every get
+	 */
+	public List<LinearObjectTableEntry> asList() {
+		return new AbstractList<>() {
+			@Override
+			public LinearObjectTableEntry get(int index) {
+				return getEntry(index);
+			}
+			
+			@Override
+			public int size() {
+				return getCount();
+			}
+		};
+	}
+	
+	/**
+	 * Decodes count raw object table entries
+	 */
+	public static LinearObjectTable fromBytes(byte[] b, int count, ByteDecoder d) {
+		var table = new LinearObjectTable(count);
+		for (int i = 0; i < count; i++) {
+			var offset = i * LinearObjectTableEntry.SIZE;
+			table.size[i] = d.getInt(b, offset);
+			table.base[i] = d.getInt(b, offset + 0x4);
+			table.flags[i] = d.getInt(b, offset + 0x8);
+			table.pageTableIndex[i] = d.getInt(b, offset + 0xc);
+			table.pageCount[i] = d.getInt(b, offset + 0x10);
+			table.reserved[i] = d.getInt(b, offset + 0x14);
+		}
+		return table;
+	}
+}
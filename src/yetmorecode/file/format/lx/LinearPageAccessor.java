@@ -0,0 +1,124 @@
+package yetmorecode.file.format.lx;
+
+import java.io.IOException;
+
+import yetmorecode.file.BinaryInput;
+
+/**
+ * Lazy access to the logical pages of a linear executable<br>
+ * <br>
+ * A page is read through the object page table on first access and kept in a
+ * {@link LinearPageCache}, which may be shared by many modules. Every page is
+ * {@link LinearHeader#pageSize} bytes long: physical data shorter than that is
+ * zero-filled, zero and invalid pages are all zeros, iterated pages are expanded.<br>
+ * Pages within the first {@link LinearHeader#preloadPagesCount} pages are cached
+ * as preload pages, so they survive longer.<br>
+ * Pages are keyed by their {@link LinearExecutable}, so all accessors of a module
+ * share them. Pages of a module no longer used stay until they are evicted or the
+ * module is closed with {@link #close()}.<br>
+ * <br>
+ * The returned arrays are shared with the cache and must not be modified,
+ * use {@link #readPage(int, byte[], int)} for a private copy.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class LinearPageAccessor implements AutoCloseable {
+	private final LinearExecutable exe;
+	
+	private final BinaryInput input;
+	
+	private final LinearPageCache cache;
+	
+	public LinearPageAccessor(LinearExecutable exe, BinaryInput input, LinearPageCache cache) {
+		this.exe = exe;
+		this.input = input;
+		this.cache = cache;
+	}
+	
+	public int getPageCount() {
+		return exe.pageTable.getCount();
+	}
+	
+	public int getPageSize() {
+		return exe.header.pageSize;
+	}
+	
+	/**
+	 * Logical page, read on first access
+	 * 
+	 * @param page page index, starting at 1
+	 */
+	public byte[] getPage(int page) throws IOException {
+		if (page < 1 || page > exe.pageTable.getCount()) {
+			throw new IndexOutOfBoundsException("Invalid page " + page);
+		}
+		var data = cache.get(exe.cacheId, page);
+		if (data == null) {
+			data = load(page);
+			cache.put(exe.cacheId, page, data, page <= exe.header.preloadPagesCount);
+		}
+		return data;
+	}
+	
+	/**
+	 * Copies a logical page into dst
+	 */
+	public void readPage(int page, byte[] dst, int off) throws IOException {
+		var data = getPage(page);
+		System.arraycopy(data, 0, dst, off, data.length);
+	}
+	
+	/**
+	 * Drops the cached pages of this module, also for its other accessors
+	 */
+	@Override
+	public void close() {
+		cache.remove(exe.cacheId);
+	}
+	
+	private byte[] load(int page) throws IOException {
+		var table = exe.pageTable;
+		var data = new byte[exe.header.pageSize];
+		switch (table.flags[page - 1]) {
+		case LinearPageTableEntry.FLAG_LEGAL:
+			var size = Math.min(table.size[page - 1] & 0xffff, data.length);
+			input.readFully(exe.getPageFileOffset(page), data, 0, size);
+			break;
+		case LinearPageTableEntry.FLAG_ITERATED:
+			var packed = new byte[table.size[page - 1] & 0xffff];
+			input.readFully(exe.getPageFileOffset(page), packed, 0, packed.length);
+			expandIterated(packed, data);
+			break;
+		case LinearPageTableEntry.FLAG_INVALID:
+		case LinearPageTableEntry.FLAG_ZERO:
+		case LinearPageTableEntry.FLAG_RANGE:
+			break;
+		default:
+			throw new IOException("Unsupported page type " + table.flags[page - 1] + " of page " + page);
+		}
+		return data;
+	}
+	
+	/**
+	 * Expands iterated data: records of a 16-bit repeat count, a 16-bit length
+	 * and that many bytes, repeated count times
+	 */
+	private void expandIterated(byte[] packed, byte[] data) throws IOException {
+		var d = exe.header.getDecoder();
+		var src = 0;
+		var dst = 0;
+		while (src + 4 <= packed.length) {
+			var count = d.getUnsignedShort(packed, src);
+			var length = d.getUnsignedShort(packed, src + 2);
+			src += 4;
+			if (src + length > packed.length || dst + (long) count * length > data.length) {
+				throw new IOException("Malformed iterated page");
+			}
+			for (int i = 0; i < count; i++) {
+				System.arraycopy(packed, src, data, dst, length);
+				dst += length;
+			}
+			src += length;
+		}
+	}
+}
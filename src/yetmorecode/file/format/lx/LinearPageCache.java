@@ -0,0 +1,139 @@
+package yetmorecode.file.format.lx;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Page cache shared by any number of linear executables, with a global byte budget<br>
+ * <br>
+ * Pages are evicted in LRU order once the cached bytes exceed the budget. Preload
+ * pages are kept in a separate LRU list and are only evicted once no other page
+ * is left.<br>
+ * The cache is safe to use from several threads.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class LinearPageCache {
+	private final static AtomicInteger MODULES = new AtomicInteger();
+	
+	private final long byteBudget;
+	
+	/**
+	 * Cached pages by module &lt;&lt; 32 | page, in access order
+	 */
+	private final LinkedHashMap<Long, byte[]> pages = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<Long, byte[]> preloadPages = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedBytes = 0;
+	
+	private long hits = 0;
+	private long misses = 0;
+	
+	public LinearPageCache(long byteBudget) {
+		this.byteBudget = byteBudget;
+	}
+	
+	/**
+	 * New module id, keeping the pages of different modules apart
+	 */
+	static int nextModule() {
+		return MODULES.incrementAndGet();
+	}
+	
+	synchronized byte[] get(int module, int page) {
+		var key = key(module, page);
+		var data = pages.get(key);
+		if (data == null) {
+			data = preloadPages.get(key);
+		}
+		if (data != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return data;
+	}
+	
+	synchronized void put(int module, int page, byte[] data, boolean preload) {
+		var key = key(module, page);
+		var old = (preload ? preloadPages : pages).put(key, data);
+		if (old != null) {
+			cachedBytes -= old.length;
+		}
+		cachedBytes += data.length;
+		evict(key);
+	}
+	
+	/**
+	 * Drops all pages of a module
+	 */
+	synchronized void remove(int module) {
+		remove(pages, module);
+		remove(preloadPages, module);
+	}
+	
+	public long getByteBudget() {
+		return byteBudget;
+	}
+	
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+	
+	/**
+	 * Number of page lookups served from memory
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Number of page lookups that had to be loaded
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Drops all cached pages, the counters are kept
+	 */
+	public synchronized void clear() {
+		pages.clear();
+		preloadPages.clear();
+		cachedBytes = 0;
+	}
+	
+	private void evict(long keep) {
+		evict(pages, keep);
+		evict(preloadPages, keep);
+	}
+	
+	private void evict(LinkedHashMap<Long, byte[]> map, long keep) {
+		Iterator<Map.Entry<Long, byte[]>> it = map.entrySet().iterator();
+		while (cachedBytes > byteBudget && it.hasNext()) {
+			var entry = it.next();
+			// the page just added always stays
+			if (entry.getKey() == keep) {
+				continue;
+			}
+			cachedBytes -= entry.getValue().length;
+			it.remove();
+		}
+	}
+	
+	private void remove(LinkedHashMap<Long, byte[]> map, int module) {
+		var it = map.entrySet().iterator();
+		while (it.hasNext()) {
+			var entry = it.next();
+			if ((int) (entry.getKey() >>> 32) == module) {
+				cachedBytes -= entry.getValue().length;
+				it.remove();
+			}
+		}
+	}
+	
+	private static long key(int module, int page) {
+		return (long) module << 32 | (page & 0xffffffffL);
+	}
+}
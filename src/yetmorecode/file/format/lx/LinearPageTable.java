@@ -0,0 +1,109 @@
+package yetmorecode.file.format.lx;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Object page table, decoded into parallel primitive columns (8 bytes per page)<br>
+ * <br>
+ * Row i describes logical page i + 1. For LE modules offset holds the page number
+ * and size is derived from the page size (bytes on last page for the final page).<br>
+ * {@link LinearPageTableEntry} instances are only created on demand, see
+ * {@link #getEntry(int)} and {@link #asList()}.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class LinearPageTable {
+	/**
+	 * Whether the rows come from an LE page table
+	 */
+	public boolean le;
+	
+	/**
+	 * Page data offsets (LX, shifted by the page offset shift) or page numbers (LE)
+	 */
+	public int[] offset;
+	
+	/**
+	 * Number of bytes of data, unsigned
+	 */
+	public short[] size;
+	
+	/**
+	 * Page type, see the {@link LinearPageTableEntry} FLAG_* constants
+	 */
+	public short[] flags;
+	
+	public LinearPageTable(int count, boolean le) {
+		this.le = le;
+		offset = new int[count];
+		size = new short[count];
+		flags = new short[count];
+	}
+	
+	public int getCount() {
+		return offset.length;
+	}
+	
+	/**
+	 * Entry object for row i
+	 */
+	public LinearPageTableEntry getEntry(int index) {
+		return getEntry(index, le ? new LePageTableEntry() : new LxPageTableEntry());
+	}
+	
+	/**
+	 * Fills entry with row i, so one instance can be reused while iterating
+	 */
+	public LinearPageTableEntry getEntry(int index, LinearPageTableEntry entry) {
+		entry.index = index + 1;
+		entry.dataOffset = offset[index];
+		entry.dataSize = size[index];
+		entry.flags = flags[index];
+		return entry;
+	}
+	
+	/**
+	 * Read-only list view, creating an entry object on every get
+	 */
+	public List<LinearPageTableEntry> asList() {
+		return new AbstractList<>() {
+			@Override
+			public LinearPageTableEntry get(int index) {
+				return getEntry(index);
+			}
+			
+			@Override
+			public int size() {
+				return getCount();
+			}
+		};
+	}
+	
+	/**
+	 * Decodes the raw object page table of a module
+	 */
+	public static LinearPageTable fromBytes(byte[] b, LinearHeader header) {
+		var count = header.pageCount;
+		var table = new LinearPageTable(count, header.isLe());
+		if (table.le) {
+			for (int i = 0; i < count; i++) {
+				var base = i * LePageTableEntry.SIZE;
+				// 24-bit page number, high order byte first
+				var page = (b[base] & 0xff) << 16 | (b[base + 1] & 0xff) << 8 | (b[base + 2] & 0xff);
+				table.offset[i] = page;
+				table.flags[i] = (short) (b[base + 3] & 0xff);
+				table.size[i] = (short) (page == count ? header.lastPageSize : header.pageSize);
+			}
+		} else {
+			var d = header.getDecoder();
+			for (int i = 0; i < count; i++) {
+				var base = i * LxPageTableEntry.SIZE;
+				table.offset[i] = d.getInt(b, base);
+				table.size[i] = d.getShort(b, base + 4);
+				table.flags[i] = d.getShort(b, base + 6);
+			}
+		}
+		return table;
+	}
+}
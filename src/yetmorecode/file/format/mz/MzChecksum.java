@@ -0,0 +1,148 @@
+package yetmorecode.file.format.mz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+import yetmorecode.file.BinaryInput;
+
+/**
+ * Streaming MZ word checksum<br>
+ * <br>
+ * Sums little endian 16-bit words over the image (the header plus the load module,
+ * as given by {@link MzHeader#getImageSize()}). If the checksum field is set properly,
+ * the sum over the whole image including the field itself is zero.<br>
+ * An odd trailing byte counts as a word with a zero high byte.<br>
+ * <br>
+ * The data is consumed in chunks of {@link #CHUNK_SIZE} bytes through {@link LongBuffer} views,
+ * summing four words per 64-bit load, so even large images are never held on the heap at once.
+ * On a {@link yetmorecode.file.MappedBinaryFileInput} the chunks are views of the mapping.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class MzChecksum {
+	public final static int CHUNK_SIZE = 0x10000;
+	
+	/**
+	 * Offset of the checksum field in the header
+	 */
+	public final static int CHECKSUM_OFFSET = 0x12;
+	
+	/**
+	 * Number of 64-bit loads the lane accumulators can take before they have to be folded
+	 */
+	private final static int FOLD_INTERVAL = 0x4000;
+	
+	private final static long LANE_MASK = 0x0000ffff0000ffffL;
+	
+	/**
+	 * Running sum, only the low 16 bits are significant
+	 */
+	private long sum;
+	
+	/**
+	 * Low byte of a word split across two updates, or -1
+	 */
+	private int pending = -1;
+	
+	/**
+	 * Adds the remaining bytes of data to the sum, continuing the word stream of previous updates
+	 */
+	public MzChecksum update(ByteBuffer data) {
+		var bb = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		var n = bb.remaining();
+		var i = 0;
+		if (pending >= 0 && n > 0) {
+			sum += pending | (bb.get(0) & 0xff) << 8;
+			pending = -1;
+			i = 1;
+		}
+		var longs = (n - i) >>> 3;
+		if (longs > 0) {
+			sumLanes(bb.slice(i, longs << 3).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer());
+			i += longs << 3;
+		}
+		for (; i + 1 < n; i += 2) {
+			sum += bb.getShort(i) & 0xffff;
+		}
+		if (i < n) {
+			pending = bb.get(i) & 0xff;
+		}
+		data.position(data.limit());
+		return this;
+	}
+	
+	public MzChecksum update(byte[] b, int off, int len) {
+		return update(ByteBuffer.wrap(b, off, len));
+	}
+	
+	/**
+	 * Adds size bytes read at an absolute offset to the sum, one chunk at a time
+	 */
+	public MzChecksum update(BinaryInput input, long offset, long size) throws IOException {
+		while (size > 0) {
+			var len = (int) Math.min(size, CHUNK_SIZE);
+			update(input.bulk(offset, len));
+			offset += len;
+			size -= len;
+		}
+		return this;
+	}
+	
+	/**
+	 * 16-bit sum of all words so far
+	 */
+	public int getSum() {
+		return (int) (sum + Math.max(pending, 0)) & 0xffff;
+	}
+	
+	/**
+	 * Value that makes the sum zero when stored in an (up to now zero) checksum field
+	 */
+	public short getChecksum() {
+		return (short) -getSum();
+	}
+	
+	public void reset() {
+		sum = 0;
+		pending = -1;
+	}
+	
+	/**
+	 * Computes the checksum of the MZ image at offset, as if the checksum field was zero
+	 */
+	public static short compute(BinaryInput input, long offset) throws IOException {
+		var header = MzHeader.fromStream(input, offset);
+		var sum = new MzChecksum().update(input, offset, header.getImageSize()).getSum();
+		return (short) -(sum - (header.checksum & 0xffff));
+	}
+	
+	/**
+	 * Checks the stored checksum of the MZ image at offset
+	 */
+	public static boolean verify(BinaryInput input, long offset) throws IOException {
+		var header = MzHeader.fromStream(input, offset);
+		return new MzChecksum().update(input, offset, header.getImageSize()).getSum() == 0;
+	}
+	
+	/**
+	 * Sums four words per load, two per 32-bit lane of each accumulator
+	 */
+	private void sumLanes(LongBuffer longs) {
+		var n = longs.remaining();
+		for (var start = 0; start < n; start += FOLD_INTERVAL) {
+			var end = Math.min(n, start + FOLD_INTERVAL);
+			var even = 0L;
+			var odd = 0L;
+			for (var j = start; j < end; j++) {
+				var v = longs.get(j);
+				even += v & LANE_MASK;
+				odd += (v >>> 16) & LANE_MASK;
+			}
+			var lanes = even + odd;
+			sum += (lanes & 0xffffffffL) + (lanes >>> 32);
+			sum &= 0xffff;
+		}
+	}
+}
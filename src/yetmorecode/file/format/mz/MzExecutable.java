@@ -1,9 +1,188 @@
 package yetmorecode.file.format.mz;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 
+import yetmorecode.file.BinaryFileOutputStream;
+import yetmorecode.file.BinaryInput;
+
+/**
+ * MS-DOS MZ executable<br>
+ * <br>
+ * Relocations are kept packed in {@link #relocationTable}, one int per entry,
+ * instead of one object per entry.
+ * 
+ * @author https://github.com/yetmorecode
+ */
 public class MzExecutable {
+	/**
+	 * Lowest offset the relocation table can have (the end of the mandatory header fields)
+	 */
+	public final static int RELOCATION_TABLE_MIN_OFFSET = 0x1c;
+	
 	public MzHeader header = new MzHeader();
+	
+	/**
+	 * Relocation entries as objects (not populated by {@link #fromStream}, see {@link #getRelocation})
+	 */
 	public ArrayList<MzRelocationEntry> relocations = new ArrayList<MzRelocationEntry>();
+	
+	/**
+	 * Relocation table, each entry packed as segment &lt;&lt; 16 | offset
+	 * (which is exactly the little endian dword of the entry in the file)
+	 */
+	public int[] relocationTable = new int[0];
+	
+	/**
+	 * Raw header region (headerSize paragraphs), including whatever lies between
+	 * the header fields, the relocation table and the load module
+	 */
+	public byte[] headerData = new byte[0];
+	
+	/**
+	 * The load module
+	 */
 	public byte[] programData = new byte[0];
+	
+	/**
+	 * Reads header, relocation table and load module of the MZ image at the given offset.<br>
+	 * <br>
+	 * The relocation table is read with a single bulk read. The load module is read
+	 * as far as the file goes, in case blockCount claims more than there is.<br>
+	 * All reads are positional, the current position of input is left untouched.
+	 */
+	public static MzExecutable fromStream(BinaryInput input, long offset) throws IOException {
+		var exe = new MzExecutable();
+		exe.header = MzHeader.fromStream(input, offset);
+		var count = exe.header.relocations & 0xffff;
+		exe.relocationTable = new int[count];
+		if (count > 0) {
+			input.bulk(offset + (exe.header.relocationTableOffset & 0xffff), 4 * count)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.asIntBuffer()
+				.get(exe.relocationTable);
+		}
+		// positional reads, clamped to the end of the file
+		var available = Math.max(0, input.size() - offset);
+		var headerSize = (int) Math.min(exe.header.getHeaderBytes(), available);
+		exe.headerData = new byte[headerSize];
+		input.readFully(offset, exe.headerData, 0, headerSize);
+		var programSize = (int) Math.max(0, Math.min(exe.header.getLoadModuleSize(), available - headerSize));
+		exe.programData = new byte[programSize];
+		input.readFully(offset + headerSize, exe.programData, 0, programSize);
+		return exe;
+	}
+	
+	/**
+	 * Recomputes relocations, headerSize, blockCount and bytesOnLastBlock
+	 * from {@link #headerData}, {@link #relocationTable} and {@link #programData}.<br>
+	 * <br>
+	 * The header region keeps its size unless the relocation table no longer fits.
+	 */
+	public void updateLayout() {
+		header.relocations = (short) relocationTable.length;
+		var size = headerData.length > 0 ? headerData.length : MzHeader.SIZE;
+		if (relocationTable.length > 0) {
+			if ((header.relocationTableOffset & 0xffff) < RELOCATION_TABLE_MIN_OFFSET) {
+				header.relocationTableOffset = (short) MzHeader.SIZE;
+			}
+			size = Math.max(size, (header.relocationTableOffset & 0xffff) + 4 * relocationTable.length);
+		}
+		header.headerSize = (short) ((size + MzHeader.PARAGRAPH_SIZE - 1) / MzHeader.PARAGRAPH_SIZE);
+		var image = (long) header.getHeaderBytes() + programData.length;
+		header.blockCount = (short) ((image + MzHeader.BLOCK_SIZE - 1) / MzHeader.BLOCK_SIZE);
+		header.bytesOnLastBlock = (short) (image % MzHeader.BLOCK_SIZE);
+	}
+	
+	/**
+	 * Writes the MZ image (header region, relocation table and load module) at the
+	 * current position of out, see {@link #toStream(BinaryFileOutputStream, boolean)}
+	 */
+	public void toStream(BinaryFileOutputStream out) throws IOException {
+		toStream(out, false);
+	}
+	
+	/**
+	 * Writes the MZ image (header region, relocation table and load module) at the
+	 * current position of out.<br>
+	 * <br>
+	 * The layout is recomputed first (see {@link #updateLayout()}). The header region
+	 * is assembled from {@link #headerData}, the encoded header fields and the relocation
+	 * table, so an unmodified executable is written back byte for byte.
+	 * 
+	 * @param updateChecksum whether to recompute the word checksum (see {@link MzChecksum})
+	 */
+	public void toStream(BinaryFileOutputStream out, boolean updateChecksum) throws IOException {
+		updateLayout();
+		var region = formatHeader();
+		if (updateChecksum) {
+			region.putShort(MzChecksum.CHECKSUM_OFFSET, (short) 0);
+			header.checksum = new MzChecksum()
+				.update(region.duplicate())
+				.update(programData, 0, programData.length)
+				.getChecksum();
+			region.putShort(MzChecksum.CHECKSUM_OFFSET, header.checksum);
+		}
+		out.write(region.array());
+		out.write(programData);
+	}
+	
+	/**
+	 * Assembles the header region: raw header data, overlaid by the header fields
+	 * and the relocation table
+	 */
+	private ByteBuffer formatHeader() {
+		var region = ByteBuffer.allocate(header.getHeaderBytes()).order(ByteOrder.LITTLE_ENDIAN);
+		region.put(0, headerData, 0, Math.min(headerData.length, region.capacity()));
+		if (region.capacity() >= MzHeader.SIZE) {
+			header.toBuffer(region, 0);
+		} else {
+			// tiny header, the load module begins within the reserved fields
+			var fields = ByteBuffer.allocate(MzHeader.SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.toBuffer(fields, 0);
+			region.put(0, fields.array(), 0, region.capacity());
+		}
+		var tableOffset = header.relocationTableOffset & 0xffff;
+		for (int i = 0; i < relocationTable.length; i++) {
+			region.putInt(tableOffset + 4 * i, relocationTable[i]);
+		}
+		return region;
+	}
+	
+	public int getRelocationCount() {
+		return relocationTable.length;
+	}
+	
+	/**
+	 * Segment of relocation i (relative to the load module)
+	 */
+	public int getRelocationSegment(int i) {
+		return relocationTable[i] >>> 16;
+	}
+	
+	/**
+	 * Offset of relocation i within its segment
+	 */
+	public int getRelocationOffset(int i) {
+		return relocationTable[i] & 0xffff;
+	}
+	
+	/**
+	 * Offset of the word patched by relocation i within the load module
+	 */
+	public int getRelocationTarget(int i) {
+		return getRelocationSegment(i) * MzHeader.PARAGRAPH_SIZE + getRelocationOffset(i);
+	}
+	
+	/**
+	 * Relocation i as an object
+	 */
+	public MzRelocationEntry getRelocation(int i) {
+		var entry = new MzRelocationEntry();
+		entry.offset = (short) getRelocationOffset(i);
+		entry.segment = (short) getRelocationSegment(i);
+		return entry;
+	}
 }
@@ -1,8 +1,12 @@
 package yetmorecode.file.format.mz;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CompletableFuture;
 
-import yetmorecode.file.BinaryFileInputStream;
+import yetmorecode.file.AsyncBinaryFile;
+import yetmorecode.file.BinaryInput;
 
 /**
  * MS-DOS MZ header<br>
@@ -153,29 +157,133 @@ public class MzHeader {
      */
 	public byte [] stubBytes;
 	
-	public static MzHeader fromStream(BinaryFileInputStream input, long offset) throws IOException {
+	/**
+	 * Size of the header in bytes (headerSize paragraphs)
+	 */
+	public int getHeaderBytes() {
+		return (headerSize & 0xffff) * PARAGRAPH_SIZE;
+	}
+	
+	/**
+	 * Size of the MZ image in the file (header and load module) as given by
+	 * blockCount and bytesOnLastBlock. Overlays and appended data start after it.
+	 */
+	public long getImageSize() {
+		var blocks = blockCount & 0xffff;
+		var last = bytesOnLastBlock & 0xffff;
+		if (blocks == 0) {
+			return 0;
+		}
+		return last == 0 ? (long) blocks * BLOCK_SIZE : (long) (blocks - 1) * BLOCK_SIZE + last;
+	}
+	
+	/**
+	 * Size of the load module (the program data following the header)
+	 */
+	public long getLoadModuleSize() {
+		return Math.max(0, getImageSize() - getHeaderBytes());
+	}
+	
+	/**
+	 * Reads a MZ header asynchronously
+	 */
+	public static CompletableFuture<MzHeader> fromAsync(AsyncBinaryFile file, long offset) {
+		return file.read(offset, SIZE).thenApply(MzHeader::fromBuffer);
+	}
+	
+	/**
+	 * Reads a MZ header with a single read of {@link #SIZE} bytes at the given offset.<br>
+	 * <br>
+	 * The current position of input is left untouched.
+	 */
+	public static MzHeader fromStream(BinaryInput input, long offset) throws IOException {
+		return fromBuffer(input.bulk(offset, SIZE), 0);
+	}
+	
+	/**
+	 * Decodes a MZ header from the {@link #SIZE} bytes at the buffer's position.<br>
+	 * <br>
+	 * Neither the position nor the byte order of the buffer is changed.
+	 */
+	public static MzHeader fromBuffer(ByteBuffer bb) {
+		return fromBuffer(bb, bb.position());
+	}
+	
+	/**
+	 * Decodes a MZ header from the {@link #SIZE} bytes at an absolute index of the buffer,
+	 * e.g. one of many headers collected into a single buffer.
+	 */
+	public static MzHeader fromBuffer(ByteBuffer bb, int index) {
+		if (bb.order() != ByteOrder.LITTLE_ENDIAN) {
+			bb = bb.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		}
 		var header = new MzHeader();
-		var old = input.position(offset);
-		header.signature = input.readShort();
-		header.bytesOnLastBlock = input.readShort();
-		header.blockCount = input.readShort();
-		header.relocations = input.readShort();
-		header.headerSize = input.readShort();
-		header.minExtraParagraphs = input.readShort();
-		header.maxExtraParagraphs = input.readShort();
-		header.ss = input.readShort();
-		header.sp = input.readShort();
-		header.checksum = input.readShort();
-		header.ip = input.readShort();
-		header.cs = input.readShort();
-		header.relocationTableOffset = input.readShort();
-		header.overlayNumber = input.readShort();
-		input.skip(8);
-		header.oemId = input.readShort();
-		header.oemInfo = input.readShort();
-		input.skip(20);
-		header.fileAddressNewExe = input.readInt();
-		input.position(old);
+		header.signature = bb.getShort(index);
+		header.bytesOnLastBlock = bb.getShort(index + 0x02);
+		header.blockCount = bb.getShort(index + 0x04);
+		header.relocations = bb.getShort(index + 0x06);
+		header.headerSize = bb.getShort(index + 0x08);
+		header.minExtraParagraphs = bb.getShort(index + 0x0a);
+		header.maxExtraParagraphs = bb.getShort(index + 0x0c);
+		header.ss = bb.getShort(index + 0x0e);
+		header.sp = bb.getShort(index + 0x10);
+		header.checksum = bb.getShort(index + 0x12);
+		header.ip = bb.getShort(index + 0x14);
+		header.cs = bb.getShort(index + 0x16);
+		header.relocationTableOffset = bb.getShort(index + 0x18);
+		header.overlayNumber = bb.getShort(index + 0x1a);
+		for (int i = 0; i < header.reserved.length; i++) {
+			header.reserved[i] = bb.getShort(index + 0x1c + 2 * i);
+		}
+		header.oemId = bb.getShort(index + 0x24);
+		header.oemInfo = bb.getShort(index + 0x26);
+		for (int i = 0; i < header.resreved2.length; i++) {
+			header.resreved2[i] = bb.getShort(index + 0x28 + 2 * i);
+		}
+		header.fileAddressNewExe = bb.getInt(index + 0x3c);
 		return header;
 	}
+	
+	/**
+	 * Copy of the header fields
+	 */
+	public MzHeader copy() {
+		var bb = ByteBuffer.allocate(SIZE);
+		toBuffer(bb, 0);
+		return fromBuffer(bb, 0);
+	}
+	
+	/**
+	 * Encodes the header fields into the {@link #SIZE} bytes at an absolute index of the buffer.<br>
+	 * <br>
+	 * Neither the position nor the byte order of the buffer is changed.
+	 */
+	public void toBuffer(ByteBuffer bb, int index) {
+		if (bb.order() != ByteOrder.LITTLE_ENDIAN) {
+			bb = bb.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		}
+		bb.putShort(index, signature);
+		bb.putShort(index + 0x02, bytesOnLastBlock);
+		bb.putShort(index + 0x04, blockCount);
+		bb.putShort(index + 0x06, relocations);
+		bb.putShort(index + 0x08, headerSize);
+		bb.putShort(index + 0x0a, minExtraParagraphs);
+		bb.putShort(index + 0x0c, maxExtraParagraphs);
+		bb.putShort(index + 0x0e, ss);
+		bb.putShort(index + 0x10, sp);
+		bb.putShort(index + 0x12, checksum);
+		bb.putShort(index + 0x14, ip);
+		bb.putShort(index + 0x16, cs);
+		bb.putShort(index + 0x18, relocationTableOffset);
+		bb.putShort(index + 0x1a, overlayNumber);
+		for (int i = 0; i < reserved.length; i++) {
+			bb.putShort(index + 0x1c + 2 * i, reserved[i]);
+		}
+		bb.putShort(index + 0x24, oemId);
+		bb.putShort(index + 0x26, oemInfo);
+		for (int i = 0; i < resreved2.length; i++) {
+			bb.putShort(index + 0x28 + 2 * i, resreved2[i]);
+		}
+		bb.putInt(index + 0x3c, fileAddressNewExe);
+	}
 }
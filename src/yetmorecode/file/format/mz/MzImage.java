@@ -0,0 +1,30 @@
+package yetmorecode.file.format.mz;
+
+/**
+ * A MZ load module relocated to a load segment, with the initial register values
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class MzImage {
+	/**
+	 * Relocated load module, loaded at loadSegment:0000
+	 */
+	public byte[] data;
+	
+	/**
+	 * Segment the image has been relocated to
+	 */
+	public int loadSegment;
+	
+	/**
+	 * Initial CS:IP
+	 */
+	public int cs;
+	public int ip;
+	
+	/**
+	 * Initial SS:SP
+	 */
+	public int ss;
+	public int sp;
+}
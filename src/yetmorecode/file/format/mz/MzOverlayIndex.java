@@ -0,0 +1,125 @@
+package yetmorecode.file.format.mz;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import yetmorecode.file.BinaryInput;
+import yetmorecode.file.format.dos16m.BwHeader;
+import yetmorecode.file.format.lx.LinearHeader;
+
+/**
+ * Index of the regions following the loaded image of a MZ file<br>
+ * <br>
+ * The loaded image ends where blockCount and bytesOnLastBlock say. Everything after
+ * it is split into regions by looking at headers only, the payloads are never read:
+ * <ul>
+ * <li>MZ and BW images span their own blockCount / bytesOnLastBlock, so they can be chained</li>
+ * <li>LE/LX/LC images and unknown data extend to the end of the file</li>
+ * <li>an unknown region ends early where the new exe header of the main MZ header points</li>
+ * </ul>
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class MzOverlayIndex {
+	/**
+	 * Upper bound of regions, in case a chain of headers does not end
+	 */
+	public final static int MAX_REGIONS = 0x1000;
+	
+	/**
+	 * Absolute file offset of the end of the loaded image
+	 */
+	public long imageEnd;
+	
+	public ArrayList<MzOverlayRegion> regions = new ArrayList<>();
+	
+	/**
+	 * Indexes the regions following the MZ image at offset
+	 */
+	public static MzOverlayIndex fromStream(BinaryInput input, long offset) throws IOException {
+		var index = new MzOverlayIndex();
+		var size = input.size();
+		var header = MzHeader.fromStream(input, offset);
+		// the image covers at least its own header, even if the size fields are not set
+		index.imageEnd = Math.min(size, offset + Math.max(header.getImageSize(), MzHeader.SIZE));
+		
+		var newExe = -1L;
+		if (header.fileAddressNewExe != 0) {
+			newExe = offset + (header.fileAddressNewExe & 0xffffffffL);
+		}
+		
+		var position = index.imageEnd;
+		while (position < size && index.regions.size() < MAX_REGIONS) {
+			var region = new MzOverlayRegion();
+			region.offset = position;
+			region.type = detect(input, position, size);
+			var length = size - position;
+			switch (region.type) {
+			case MzOverlayRegion.TYPE_MZ:
+				var mz = MzHeader.fromStream(input, position);
+				region.overlayNumber = mz.overlayNumber & 0xffff;
+				length = mz.getImageSize();
+				break;
+			case MzOverlayRegion.TYPE_BW:
+				// BW images use the same size fields as MZ
+				length = MzHeader.fromStream(input, position).getImageSize();
+				break;
+			case MzOverlayRegion.TYPE_UNKNOWN:
+				if (newExe > position && newExe < size && detect(input, newExe, size) != MzOverlayRegion.TYPE_UNKNOWN) {
+					length = newExe - position;
+				}
+				break;
+			}
+			if (length <= 0 || length > size - position) {
+				length = size - position;
+			}
+			region.length = length;
+			index.regions.add(region);
+			position += length;
+		}
+		return index;
+	}
+	
+	/**
+	 * Detects the type of the header at position from its signature
+	 */
+	public static int detect(BinaryInput input, long position, long size) throws IOException {
+		if (size - position < 2) {
+			return MzOverlayRegion.TYPE_UNKNOWN;
+		}
+		var signature = input.bulk(position, 2).order(ByteOrder.LITTLE_ENDIAN).getShort(0);
+		if (signature == LinearHeader.SIGNATURE_LE) {
+			return MzOverlayRegion.TYPE_LE;
+		}
+		if (signature == LinearHeader.SIGNATURE_LX) {
+			return MzOverlayRegion.TYPE_LX;
+		}
+		if (signature == LinearHeader.SIGNATURE_LC) {
+			return MzOverlayRegion.TYPE_LC;
+		}
+		if (size - position < MzHeader.SIZE) {
+			// too short for the size fields we need
+			return MzOverlayRegion.TYPE_UNKNOWN;
+		}
+		if (signature == MzHeader.SIGNATURE_DOS) {
+			return MzOverlayRegion.TYPE_MZ;
+		}
+		if (signature == BwHeader.DOS16M_SIGNATURE) {
+			return MzOverlayRegion.TYPE_BW;
+		}
+		return MzOverlayRegion.TYPE_UNKNOWN;
+	}
+	
+	/**
+	 * First region of the given type, or null
+	 */
+	public MzOverlayRegion find(int type) {
+		for (var region : regions) {
+			if (region.type == type) {
+				return region;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,56 @@
+package yetmorecode.file.format.mz;
+
+/**
+ * A region of a MZ file following the loaded image (overlay, bound image or appended data)
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class MzOverlayRegion {
+	public final static int TYPE_UNKNOWN = 0;
+	
+	/**
+	 * MZ image, e.g. an overlay (see {@link #overlayNumber})
+	 */
+	public final static int TYPE_MZ = 1;
+	
+	/**
+	 * Linear executable (LE, LX or LC)
+	 */
+	public final static int TYPE_LE = 2;
+	public final static int TYPE_LX = 3;
+	public final static int TYPE_LC = 4;
+	
+	/**
+	 * DOS/16M BW image
+	 */
+	public final static int TYPE_BW = 5;
+	
+	/**
+	 * Absolute file offset
+	 */
+	public long offset;
+	
+	/**
+	 * Length in bytes
+	 */
+	public long length;
+	
+	/**
+	 * One of the TYPE_* constants
+	 */
+	public int type;
+	
+	/**
+	 * Overlay number of a MZ region
+	 */
+	public int overlayNumber;
+	
+	public long getEnd() {
+		return offset + length;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%08x-%08x type %d", offset, getEnd(), type);
+	}
+}
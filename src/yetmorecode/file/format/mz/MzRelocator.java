@@ -0,0 +1,86 @@
+package yetmorecode.file.format.mz;
+
+import java.util.Arrays;
+
+/**
+ * Applies the relocations of a MZ executable to its load module<br>
+ * <br>
+ * The relocation table is decoded once into a sorted array of load module offsets,
+ * so patching walks the image front to back, and the same relocator can relocate
+ * the image to any number of load segments without allocating per entry.<br>
+ * Each relocation adds the load segment to the word at its target. Targets outside
+ * of the load module (e.g. in uninitialized memory) are skipped.
+ * 
+ * @author https://github.com/yetmorecode
+ */
+public class MzRelocator {
+	private final MzExecutable exe;
+	
+	/**
+	 * Load module offsets of the patched words, sorted ascending
+	 */
+	private final int[] targets;
+	
+	public MzRelocator(MzExecutable exe) {
+		this.exe = exe;
+		targets = new int[exe.getRelocationCount()];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = exe.getRelocationTarget(i);
+		}
+		Arrays.sort(targets);
+	}
+	
+	/**
+	 * Number of relocations
+	 */
+	public int getCount() {
+		return targets.length;
+	}
+	
+	/**
+	 * Relocates a copy of the load module to the given segment
+	 */
+	public MzImage load(int loadSegment) {
+		var image = new MzImage();
+		image.data = exe.programData.clone();
+		image.loadSegment = loadSegment & 0xffff;
+		relocate(image.data, loadSegment);
+		var header = exe.header;
+		image.cs = (header.cs + loadSegment) & 0xffff;
+		image.ip = header.ip & 0xffff;
+		image.ss = (header.ss + loadSegment) & 0xffff;
+		image.sp = header.sp & 0xffff;
+		return image;
+	}
+	
+	/**
+	 * Relocates an unrelocated load module in place
+	 * 
+	 * @return number of relocations applied
+	 */
+	public int relocate(byte[] image, int loadSegment) {
+		return rebase(image, 0, loadSegment);
+	}
+	
+	/**
+	 * Moves an image in place that has already been relocated to another segment
+	 * 
+	 * @return number of relocations applied
+	 */
+	public int rebase(byte[] image, int fromSegment, int toSegment) {
+		var delta = toSegment - fromSegment;
+		var applied = 0;
+		for (var target : targets) {
+			if (target + 1 >= image.length) {
+				// sorted, all following targets are outside as well
+				break;
+			}
+			var value = (image[target] & 0xff) | (image[target + 1] & 0xff) << 8;
+			value += delta;
+			image[target] = (byte) value;
+			image[target + 1] = (byte) (value >> 8);
+			applied++;
+		}
+		return applied;
+	}
+}
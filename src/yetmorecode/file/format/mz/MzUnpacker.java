@@ -0,0 +1,461 @@
+package yetmorecode.file.format.mz;
+
+import java.util.Arrays;
+
+import yetmorecode.file.exception.InvalidHeaderException;
+
+/**
+ * Unpacker for MZ executables compressed with Microsoft EXEPACK or LZEXE (0.90 / 0.91)<br>
+ * <br>
+ * The packed data and the packed relocation table are decoded natively, the
+ * decompression stub is never executed. The result is a plain {@link MzExecutable}
+ * with the original entry point, stack and relocations.<br>
+ * <br>
+ * Decompression works on a single output buffer owned by the unpacker and reused for
+ * every executable, so an unpacker should be kept around for bulk work (one per thread).
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class MzUnpacker {
+	/**
+	 * Not packed (or by something unknown)
+	 */
+	public final static int PACKER_NONE = 0;
+	
+	/**
+	 * Microsoft EXEPACK
+	 */
+	public final static int PACKER_EXEPACK = 1;
+	
+	/**
+	 * LZEXE 0.90
+	 */
+	public final static int PACKER_LZEXE_090 = 2;
+	
+	/**
+	 * LZEXE 0.91
+	 */
+	public final static int PACKER_LZEXE_091 = 3;
+	
+	/**
+	 * EXEPACK header signature "RB"
+	 */
+	public final static int SIGNATURE_EXEPACK = 0x4252;
+	
+	/**
+	 * LZEXE signature "LZ" in the first reserved header word
+	 */
+	public final static short SIGNATURE_LZEXE = 0x5a4c;
+	public final static short VERSION_LZEXE_090 = 0x3930;
+	public final static short VERSION_LZEXE_091 = 0x3139;
+	
+	/**
+	 * Message in the EXEPACK stub, directly followed by the packed relocation table
+	 */
+	private final static byte[] EXEPACK_ERROR_MESSAGE = "Packed file is corrupt".getBytes();
+	
+	/**
+	 * Offset of the packed relocation table in the LZEXE stub segment
+	 */
+	private final static int LZEXE_090_RELOCATIONS = 0x19d;
+	private final static int LZEXE_091_RELOCATIONS = 0x158;
+	
+	/**
+	 * Output of the last unpack, reused as long as it is large enough
+	 */
+	private byte[] buffer = new byte[0x10000];
+	
+	/**
+	 * Relocations of the last unpack
+	 */
+	private int[] relocations = new int[0x100];
+	private int relocationCount;
+	
+	/**
+	 * Detects the packer of an executable from its header and the stub header at CS:0000
+	 *
+	 * @return one of the PACKER_* constants
+	 */
+	public static int detect(MzExecutable exe) {
+		var header = exe.header;
+		if (header.reserved[0] == SIGNATURE_LZEXE) {
+			if (header.reserved[1] == VERSION_LZEXE_090) {
+				return PACKER_LZEXE_090;
+			}
+			if (header.reserved[1] == VERSION_LZEXE_091) {
+				return PACKER_LZEXE_091;
+			}
+		}
+		if (exepackHeaderSize(exe) > 0) {
+			return PACKER_EXEPACK;
+		}
+		return PACKER_NONE;
+	}
+	
+	/**
+	 * Unpacks a packed executable
+	 *
+	 * @return the unpacked executable, or exe itself if it is not packed
+	 * @throws InvalidHeaderException if the packed data is corrupt
+	 */
+	public MzExecutable unpack(MzExecutable exe) throws InvalidHeaderException {
+		switch (detect(exe)) {
+		case PACKER_EXEPACK:
+			return unpackExepack(exe);
+		case PACKER_LZEXE_090:
+		case PACKER_LZEXE_091:
+			return unpackLzexe(exe);
+		default:
+			return exe;
+		}
+	}
+	
+	/**
+	 * EXEPACK<br>
+	 * <br>
+	 * The EXEPACK header sits at CS:0000, directly after the compressed data:
+	 * <pre>
+	 * 00h  real IP        08h  real SP
+	 * 02h  real CS        0Ah  real SS
+	 * 04h  (scratch)      0Ch  uncompressed length (paragraphs)
+	 * 06h  exepack size   0Eh  skip length (18 byte header only)
+	 *                     last word: "RB"
+	 * </pre>
+	 * The data is decompressed back to front, in place: commands B0h (fill) and
+	 * B2h (copy) are read from the end, bit 0 set marks the last command.
+	 */
+	private MzExecutable unpackExepack(MzExecutable exe) throws InvalidHeaderException {
+		var data = exe.programData;
+		var headerSize = exepackHeaderSize(exe);
+		var base = stubOffset(exe);
+		var destLength = word(data, base + 0x0c) * MzHeader.PARAGRAPH_SIZE;
+		var skipLength = headerSize == 18 ? Math.max(word(data, base + 0x0e), 1) : 1;
+		var src = base - (skipLength - 1) * MzHeader.PARAGRAPH_SIZE;
+		if (src < 0 || destLength < src) {
+			throw new InvalidHeaderException();
+		}
+		var out = buffer(destLength);
+		System.arraycopy(data, 0, out, 0, src);
+	
+		// up to 15 bytes of padding
+		for (int i = 0; i < 15 && src > 0 && (data[src - 1] & 0xff) == 0xff; i++) {
+			src--;
+		}
+		var dst = destLength;
+		try {
+			for (;;) {
+				var command = out[--src] & 0xff;
+				src -= 2;
+				var length = word(out, src);
+				switch (command & 0xfe) {
+				case 0xb0:
+					var fill = out[--src];
+					if (dst - length < src) {
+						throw new InvalidHeaderException();
+					}
+					Arrays.fill(out, dst - length, dst, fill);
+					dst -= length;
+					break;
+				case 0xb2:
+					src -= length;
+					dst -= length;
+					System.arraycopy(out, src, out, dst, length);
+					break;
+				default:
+					throw new InvalidHeaderException();
+				}
+				if ((command & 1) != 0) {
+					break;
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new InvalidHeaderException();
+		}
+	
+		// 16 sections of offsets, one per 64k segment
+		var table = indexOf(data, EXEPACK_ERROR_MESSAGE, base + headerSize);
+		if (table < 0) {
+			throw new InvalidHeaderException();
+		}
+		table += EXEPACK_ERROR_MESSAGE.length;
+		var end = Math.min(data.length, base + word(data, base + 0x06));
+		relocationCount = 0;
+		for (int segment = 0; segment < 0x10000; segment += 0x1000) {
+			if (table + 2 > end) {
+				throw new InvalidHeaderException();
+			}
+			var count = word(data, table);
+			table += 2;
+			if (table + 2 * count > end) {
+				throw new InvalidHeaderException();
+			}
+			for (int i = 0; i < count; i++, table += 2) {
+				addRelocation(segment, word(data, table));
+			}
+		}
+	
+		return result(exe, destLength,
+			word(data, base), word(data, base + 0x02), word(data, base + 0x08), word(data, base + 0x0a));
+	}
+	
+	/**
+	 * LZEXE<br>
+	 * <br>
+	 * The LZEXE header sits at CS:0000 (IP, CS, SP, SS, compressed size and
+	 * size increase in paragraphs, stub size in bytes), the compressed data
+	 * starts the given number of paragraphs before it. The data is a LZ77 stream
+	 * with interleaved 16-bit control words, decoded front to back.
+	 */
+	private MzExecutable unpackLzexe(MzExecutable exe) throws InvalidHeaderException {
+		var data = exe.programData;
+		var base = stubOffset(exe);
+		if (base + 0x10 > data.length) {
+			throw new InvalidHeaderException();
+		}
+		var src = base - word(data, base + 0x08) * MzHeader.PARAGRAPH_SIZE;
+		if (src < 0) {
+			throw new InvalidHeaderException();
+		}
+	
+		var out = buffer;
+		var dst = 0;
+		try {
+			var bits = word(data, src);
+			src += 2;
+			var count = 16;
+			for (;;) {
+				// inline bit reader: bit 0 first, reload after 16 bits
+				var bit = bits & 1;
+				if (--count == 0) {
+					bits = word(data, src);
+					src += 2;
+					count = 16;
+				} else {
+					bits >>>= 1;
+				}
+				if (bit != 0) {
+					if (dst == out.length) {
+						out = grow(dst + 1);
+					}
+					out[dst++] = data[src++];
+					continue;
+				}
+				int length;
+				int span;
+				bit = bits & 1;
+				if (--count == 0) {
+					bits = word(data, src);
+					src += 2;
+					count = 16;
+				} else {
+					bits >>>= 1;
+				}
+				if (bit == 0) {
+					length = 0;
+					for (int i = 0; i < 2; i++) {
+						length = length << 1 | (bits & 1);
+						if (--count == 0) {
+							bits = word(data, src);
+							src += 2;
+							count = 16;
+						} else {
+							bits >>>= 1;
+						}
+					}
+					length += 2;
+					span = (data[src++] & 0xff) - 0x100;
+				} else {
+					var low = data[src++] & 0xff;
+					var high = data[src++] & 0xff;
+					span = (low | (high & ~0x07) << 5 | 0xe000) - 0x10000;
+					length = (high & 0x07) + 2;
+					if (length == 2) {
+						length = data[src++] & 0xff;
+						if (length == 0) {
+							// end of the compressed load module
+							break;
+						}
+						if (length == 1) {
+							// segment change
+							continue;
+						}
+						length++;
+					}
+				}
+				if (dst + span < 0) {
+					throw new InvalidHeaderException();
+				}
+				if (dst + length > out.length) {
+					out = grow(dst + length);
+				}
+				// overlapping copy, byte by byte
+				for (; length > 0; length--, dst++) {
+					out[dst] = out[dst + span];
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new InvalidHeaderException();
+		}
+	
+		relocationCount = 0;
+		if (detect(exe) == PACKER_LZEXE_090) {
+			readLzexe090Relocations(data, base + LZEXE_090_RELOCATIONS);
+		} else {
+			readLzexe091Relocations(data, base + LZEXE_091_RELOCATIONS);
+		}
+	
+		var unpacked = result(exe, dst, word(data, base), word(data, base + 0x02), word(data, base + 0x04), word(data, base + 0x06));
+		var header = exe.header;
+		if (header.maxExtraParagraphs != 0) {
+			// the stub's own memory requirements, as unlzexe computes them
+			var overhead = word(data, base + 0x0a) + (word(data, base + 0x0c) + MzHeader.PARAGRAPH_SIZE - 1) / MzHeader.PARAGRAPH_SIZE + 9;
+			unpacked.header.minExtraParagraphs = (short) Math.max(0, (header.minExtraParagraphs & 0xffff) - overhead);
+			if (header.maxExtraParagraphs != (short) 0xffff) {
+				unpacked.header.maxExtraParagraphs = (short) (header.maxExtraParagraphs - overhead);
+			}
+		}
+		return unpacked;
+	}
+	
+	/**
+	 * 16 sections (one per 64k segment) of a count followed by that many offsets
+	 */
+	private void readLzexe090Relocations(byte[] data, int table) throws InvalidHeaderException {
+		for (int segment = 0; segment < 0x10000; segment += 0x1000) {
+			if (table + 2 > data.length) {
+				throw new InvalidHeaderException();
+			}
+			var count = word(data, table);
+			table += 2;
+			if (table + 2 * count > data.length) {
+				throw new InvalidHeaderException();
+			}
+			for (int i = 0; i < count; i++, table += 2) {
+				addRelocation(segment, word(data, table));
+			}
+		}
+	}
+	
+	/**
+	 * Delta encoded linear addresses: a byte distance to the previous relocation,
+	 * or 0 followed by a word distance, where word 0 skips 0FFF0h bytes and word 1 ends the table
+	 */
+	private void readLzexe091Relocations(byte[] data, int table) throws InvalidHeaderException {
+		var segment = 0;
+		var offset = 0;
+		try {
+			for (;;) {
+				var span = data[table++] & 0xff;
+				if (span == 0) {
+					span = word(data, table);
+					table += 2;
+					if (span == 0) {
+						segment = (segment + 0x0fff) & 0xffff;
+						continue;
+					}
+					if (span == 1) {
+						break;
+					}
+				}
+				offset = (offset + span) & 0xffff;
+				segment = (segment + (offset >>> 4)) & 0xffff;
+				offset &= 0x0f;
+				addRelocation(segment, offset);
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new InvalidHeaderException();
+		}
+	}
+	
+	/**
+	 * Builds the unpacked executable from the output buffer and the collected relocations
+	 */
+	private MzExecutable result(MzExecutable packed, int length, int ip, int cs, int sp, int ss) {
+		var exe = new MzExecutable();
+		var header = packed.header.copy();
+		header.ip = (short) ip;
+		header.cs = (short) cs;
+		header.sp = (short) sp;
+		header.ss = (short) ss;
+		header.checksum = 0;
+		header.overlayNumber = 0;
+		header.reserved = new short[header.reserved.length];
+		header.relocationTableOffset = (short) MzHeader.SIZE;
+	
+		// keep the minimum amount of memory the packed program asked for
+		var packedParagraphs = (packed.programData.length + MzHeader.PARAGRAPH_SIZE - 1) / MzHeader.PARAGRAPH_SIZE;
+		var paragraphs = (length + MzHeader.PARAGRAPH_SIZE - 1) / MzHeader.PARAGRAPH_SIZE;
+		header.minExtraParagraphs = (short) Math.max(0, packedParagraphs + (header.minExtraParagraphs & 0xffff) - paragraphs);
+	
+		exe.header = header;
+		exe.programData = Arrays.copyOf(buffer, length);
+		exe.relocationTable = Arrays.copyOf(relocations, relocationCount);
+		exe.updateLayout();
+		return exe;
+	}
+	
+	private void addRelocation(int segment, int offset) {
+		if (relocationCount == relocations.length) {
+			relocations = Arrays.copyOf(relocations, relocationCount * 2);
+		}
+		relocations[relocationCount++] = segment << 16 | offset;
+	}
+	
+	/**
+	 * Output buffer of at least size bytes
+	 */
+	private byte[] buffer(int size) {
+		if (buffer.length < size) {
+			buffer = new byte[size];
+		}
+		return buffer;
+	}
+	
+	/**
+	 * Grows the output buffer, keeping its contents
+	 */
+	private byte[] grow(int size) {
+		buffer = Arrays.copyOf(buffer, Math.max(size, buffer.length * 2));
+		return buffer;
+	}
+	
+	/**
+	 * Offset of CS:0000 in the load module
+	 */
+	private static int stubOffset(MzExecutable exe) {
+		return (exe.header.cs & 0xffff) * MzHeader.PARAGRAPH_SIZE;
+	}
+	
+	/**
+	 * Size of the EXEPACK header at CS:0000 (16 or 18 bytes), 0 if there is none
+	 */
+	private static int exepackHeaderSize(MzExecutable exe) {
+		var data = exe.programData;
+		var base = stubOffset(exe);
+		if (exe.header.ip != 0x10 && exe.header.ip != 0x12) {
+			return 0;
+		}
+		var size = exe.header.ip;
+		if (base + size > data.length || word(data, base + size - 2) != SIGNATURE_EXEPACK) {
+			return 0;
+		}
+		return size;
+	}
+	
+	private static int indexOf(byte[] data, byte[] pattern, int from) {
+		outer:
+		for (int i = from; i <= data.length - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (data[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+	
+	private static int word(byte[] b, int index) {
+		return (b[index] & 0xff) | (b[index + 1] & 0xff) << 8;
+	}
+}
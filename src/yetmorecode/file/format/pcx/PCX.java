@@ -3,7 +3,7 @@ package yetmorecode.file.format.pcx;
 import java.io.IOException;
 import java.util.ArrayList;
 
-import yetmorecode.file.BinaryFileInputStream;
+import yetmorecode.file.BinaryInput;
 
 public class PCX {
 
@@ -69,12 +69,12 @@ public class PCX {
 		pixels = new ArrayList<>();
 	}
 	
-	public static PCX createFrom(BinaryFileInputStream input, long offset, ArrayList<RGBColor> palette) throws IOException {
+	public static PCX createFrom(BinaryInput input, long offset, ArrayList<RGBColor> palette) throws IOException {
 		var pcx = new PCX();
 		return createFrom(input, offset, palette, pcx);
 	}
 	
-	public static PCX createFrom(BinaryFileInputStream input, long offset, ArrayList<RGBColor> palette, PCX pcx) throws IOException {
+	public static PCX createFrom(BinaryInput input, long offset, ArrayList<RGBColor> palette, PCX pcx) throws IOException {
 		var old = input.position(offset);
 		pcx.manufacturer = (byte) input.read();
 		pcx.version = (byte) input.read();
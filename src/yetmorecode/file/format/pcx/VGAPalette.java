@@ -3,7 +3,7 @@ package yetmorecode.file.format.pcx;
 import java.io.IOException;
 import java.util.ArrayList;
 
-import yetmorecode.file.BinaryFileInputStream;
+import yetmorecode.file.BinaryInput;
 
 public class VGAPalette {
 	public static final int COLORS = 256;
@@ -11,20 +11,18 @@ public class VGAPalette {
 	
 	public ArrayList<RGBColor> colors = new ArrayList<>();
 	
-	public static VGAPalette createFrom(BinaryFileInputStream input, long offset) throws IOException {
+	public static VGAPalette createFrom(BinaryInput input, long offset) throws IOException {
 		var p = new VGAPalette();
 		return createFrom(input, offset, p);
 	}
 	
-	public static VGAPalette createFrom(BinaryFileInputStream input, long offset, VGAPalette p) throws IOException {
-		var old = input.position(offset);
-		for (int i = 0; i < COLORS; i++) {
-    		var r =  input.read();
-    		var g = input.read();
-    		var b = input.read();
-    		p.colors.add(new RGBColor(r, g, b));
+	public static VGAPalette createFrom(BinaryInput input, long offset, VGAPalette p) throws IOException {
+		var rgb = new byte[SIZE];
+		input.readFully(offset, rgb, 0, SIZE);
+		p.colors.ensureCapacity(p.colors.size() + COLORS);
+		for (int i = 0; i < SIZE; i += 3) {
+			p.colors.add(new RGBColor(rgb[i] & 0xff, rgb[i + 1] & 0xff, rgb[i + 2] & 0xff));
 		}
-		input.position(old);
 		return p;
 	}
 }
@@ -0,0 +1,47 @@
+package yetmorecode.file.source;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Byte source over an in-memory byte array
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class ByteArraySource implements ByteSource {
+
+	private final byte[] data;
+	private final int offset;
+	private final int length;
+
+	public ByteArraySource(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	public ByteArraySource(byte[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > data.length - length) {
+			throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " outside of array of length " + data.length);
+		}
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public long size() {
+		return length;
+	}
+
+	@Override
+	public int read(long position, ByteBuffer dst) {
+		if (position >= length) {
+			return -1;
+		}
+		var n = (int) Math.min(dst.remaining(), length - position);
+		dst.put(data, offset + (int) position, n);
+		return n;
+	}
+
+	@Override
+	public void close() {
+	}
+}
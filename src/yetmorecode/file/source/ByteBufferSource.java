@@ -0,0 +1,40 @@
+package yetmorecode.file.source;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Byte source over the remaining content of a ByteBuffer<br>
+ * <br>
+ * Works for heap, direct and mapped buffers alike. The buffer's own position
+ * and limit are captured on construction and never modified.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class ByteBufferSource implements ByteSource {
+
+	private final ByteBuffer buffer;
+
+	public ByteBufferSource(ByteBuffer buffer) {
+		this.buffer = buffer.slice();
+	}
+
+	@Override
+	public long size() {
+		return buffer.limit();
+	}
+
+	@Override
+	public int read(long position, ByteBuffer dst) {
+		if (position >= buffer.limit()) {
+			return -1;
+		}
+		var n = (int) Math.min(dst.remaining(), buffer.limit() - position);
+		dst.put(dst.position(), buffer, (int) position, n);
+		dst.position(dst.position() + n);
+		return n;
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,46 @@
+package yetmorecode.file.source;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access source of bytes<br>
+ * <br>
+ * Abstracts where the bytes of a file come from (memory, a channel, a file on disk),
+ * so executables pulled out of archives or disk images can be parsed without
+ * writing them to a temporary file first.<br>
+ * All reads are positional, a source has no current position of its own.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public interface ByteSource extends Closeable {
+
+	/**
+	 * Total number of bytes in this source
+	 */
+	public long size() throws IOException;
+
+	/**
+	 * Reads bytes starting at position into the remaining space of dst
+	 *
+	 * @return number of bytes read, or -1 if position is at or beyond the end
+	 */
+	public int read(long position, ByteBuffer dst) throws IOException;
+
+	/**
+	 * Fills the remaining space of dst with the bytes starting at position
+	 *
+	 * @throws EOFException if the source ends first
+	 */
+	public default void readFully(long position, ByteBuffer dst) throws IOException {
+		while (dst.hasRemaining()) {
+			var n = read(position, dst);
+			if (n < 0) {
+				throw new EOFException("Unexpected end of source at offset " + position);
+			}
+			position += n;
+		}
+	}
+}
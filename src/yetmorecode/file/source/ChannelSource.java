@@ -0,0 +1,45 @@
+package yetmorecode.file.source;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Byte source over a SeekableByteChannel<br>
+ * <br>
+ * File channels are read with positional reads and can be shared between threads.
+ * Other channels (e.g. entries of a zip file system) are read by seeking,
+ * which is serialized on the channel.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class ChannelSource implements ByteSource {
+
+	protected final SeekableByteChannel channel;
+
+	public ChannelSource(SeekableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	@Override
+	public long size() throws IOException {
+		return channel.size();
+	}
+
+	@Override
+	public int read(long position, ByteBuffer dst) throws IOException {
+		if (channel instanceof FileChannel) {
+			return ((FileChannel) channel).read(dst, position);
+		}
+		synchronized (channel) {
+			channel.position(position);
+			return channel.read(dst);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
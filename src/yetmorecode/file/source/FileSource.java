@@ -0,0 +1,27 @@
+package yetmorecode.file.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte source reading a file with positional reads
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class FileSource extends ChannelSource {
+
+	public FileSource(String name) throws IOException {
+		this(Path.of(name));
+	}
+
+	public FileSource(File file) throws IOException {
+		this(file.toPath());
+	}
+
+	public FileSource(Path path) throws IOException {
+		super(FileChannel.open(path, StandardOpenOption.READ));
+	}
+}
@@ -0,0 +1,143 @@
+package yetmorecode.file.text;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Table driven decoder for single-byte codepages<br>
+ * <br>
+ * Every byte maps to exactly one char through a 256 entry table, so decoding
+ * needs neither a CharsetDecoder nor any intermediate buffers. Runs of plain
+ * ASCII are decoded through the compact Latin-1 String constructor.<br>
+ * Encoding goes through the charset, one byte per char, with '?' for chars the
+ * codepage cannot represent.<br>
+ * DOS executables store their names in the OEM codepage, usually CP437 or CP850.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public final class Codepage {
+
+	/**
+	 * US OEM codepage
+	 */
+	public final static Codepage CP437 = forCharset(Charset.forName("IBM437"));
+
+	/**
+	 * Western European OEM codepage
+	 */
+	public final static Codepage CP850 = forCharset(Charset.forName("IBM850"));
+
+	/**
+	 * ISO 8859-1, mapping every byte to the char of the same value
+	 */
+	public final static Codepage LATIN1 = forCharset(StandardCharsets.ISO_8859_1);
+
+	private final Charset charset;
+
+	private final String name;
+
+	private final char[] table;
+
+	/**
+	 * Whether bytes below 80h decode to the ASCII char of the same value
+	 */
+	private final boolean asciiCompatible;
+
+	private Codepage(Charset charset, char[] table) {
+		this.charset = charset;
+		this.name = charset.name();
+		this.table = table;
+		var ascii = true;
+		for (int i = 0; i < 0x80; i++) {
+			ascii &= table[i] == i;
+		}
+		asciiCompatible = ascii;
+	}
+
+	/**
+	 * Builds the decode table of a single-byte charset
+	 */
+	public static Codepage forCharset(Charset charset) {
+		var bytes = new byte[256];
+		for (int i = 0; i < 256; i++) {
+			bytes[i] = (byte) i;
+		}
+		var decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		var table = new char[256];
+		var chars = CharBuffer.wrap(table);
+		decoder.decode(ByteBuffer.wrap(bytes), chars, true);
+		if (chars.hasRemaining()) {
+			throw new IllegalArgumentException(charset + " is not a single-byte charset");
+		}
+		return new Codepage(charset, table);
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * Char a single byte decodes to
+	 */
+	public char charAt(int b) {
+		return table[b & 0xff];
+	}
+
+	public String decode(byte[] b) {
+		return decode(b, 0, b.length);
+	}
+
+	public String decode(byte[] b, int off, int len) {
+		if (isAscii(b, off, len)) {
+			return new String(b, off, len, StandardCharsets.ISO_8859_1);
+		}
+		var chars = new char[len];
+		for (int i = 0; i < len; i++) {
+			chars[i] = table[b[off + i] & 0xff];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Encodes s, one byte per char
+	 */
+	public byte[] encode(String s) {
+		return s.getBytes(charset);
+	}
+
+	/**
+	 * Decodes the bytes between position and limit of bb, without changing its position
+	 */
+	public String decode(ByteBuffer bb) {
+		if (bb.hasArray()) {
+			return decode(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+		}
+		var chars = new char[bb.remaining()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = table[bb.get(bb.position() + i) & 0xff];
+		}
+		return new String(chars);
+	}
+
+	private boolean isAscii(byte[] b, int off, int len) {
+		if (!asciiCompatible) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (b[off + i] < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,113 @@
+package yetmorecode.file.text;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interning pool for strings decoded from a single-byte codepage<br>
+ * <br>
+ * Lookups compare the raw bytes against the pooled strings through the codepage
+ * table, so a name that is already pooled is returned without decoding it again
+ * and without allocating. Repeated module and procedure names across many files
+ * then share one String instance.<br>
+ * The pool is safe to share between threads.
+ *
+ * @author https://github.com/yetmorecode
+ */
+public class StringPool {
+
+	private final Codepage codepage;
+
+	/**
+	 * Open addressing table of pooled strings and their byte hashes
+	 */
+	private String[] values = new String[64];
+	private int[] hashes = new int[64];
+	private int size = 0;
+
+	public StringPool(Codepage codepage) {
+		this.codepage = codepage;
+	}
+
+	public Codepage getCodepage() {
+		return codepage;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public String intern(byte[] b) {
+		return intern(b, 0, b.length);
+	}
+
+	/**
+	 * Returns the pooled string for the given bytes, decoding and adding it on first use
+	 */
+	public synchronized String intern(byte[] b, int off, int len) {
+		var hash = 1;
+		for (int i = 0; i < len; i++) {
+			hash = 31 * hash + b[off + i];
+		}
+		var mask = values.length - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			var s = values[slot];
+			if (s == null) {
+				return add(slot, hash, codepage.decode(b, off, len));
+			}
+			if (hashes[slot] == hash && matches(s, b, off, len)) {
+				return s;
+			}
+		}
+	}
+
+	/**
+	 * Interns the bytes between position and limit of bb, without changing its position
+	 */
+	public String intern(ByteBuffer bb) {
+		if (bb.hasArray()) {
+			return intern(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+		}
+		var bytes = new byte[bb.remaining()];
+		bb.get(bb.position(), bytes);
+		return intern(bytes);
+	}
+
+	private boolean matches(String s, byte[] b, int off, int len) {
+		if (s.length() != len) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (s.charAt(i) != codepage.charAt(b[off + i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String add(int slot, int hash, String s) {
+		values[slot] = s;
+		hashes[slot] = hash;
+		if (++size * 2 > values.length) {
+			grow();
+		}
+		return s;
+	}
+
+	private void grow() {
+		var oldValues = values;
+		var oldHashes = hashes;
+		values = new String[oldValues.length * 2];
+		hashes = new int[oldValues.length * 2];
+		var mask = values.length - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				var slot = oldHashes[i] & mask;
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				values[slot] = oldValues[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+	}
+}